@@ -3,6 +3,7 @@ import com.vanniktech.maven.publish.SonatypeHost
 plugins {
     id("java")
     id("com.vanniktech.maven.publish") version "0.29.0"
+    id("me.champeau.jmh") version "0.7.2"
 }
 
 group = "io.github.revxrsal"
@@ -21,6 +22,13 @@ dependencies {
     compileOnly("org.jetbrains:annotations:26.0.1")
     compileOnly("org.projectlombok:lombok:1.18.36")
     annotationProcessor("org.projectlombok:lombok:1.18.36")
+
+    // main dependencies are compileOnly, so the benchmarks have to bring them
+    jmh("org.ow2.asm:asm:9.7.1")
+    jmh("org.ow2.asm:asm-commons:9.7.1")
+    jmh("org.yaml:snakeyaml:2.0")
+    jmh("com.google.code.gson:gson:2.11.0")
+    jmh("org.jetbrains:annotations:26.0.1")
 }
 
 java {
@@ -29,6 +37,12 @@ java {
     }
 }
 
+jmh {
+    jmhVersion.set("1.37")
+    profilers.add("gc")
+    resultFormat.set("JSON")
+}
+
 mavenPublishing {
     coordinates(
         groupId = group as String,
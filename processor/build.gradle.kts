@@ -0,0 +1,55 @@
+import com.vanniktech.maven.publish.SonatypeHost
+
+plugins {
+    id("java")
+    id("com.vanniktech.maven.publish")
+}
+
+group = rootProject.group
+version = rootProject.version
+
+repositories {
+    mavenCentral()
+}
+
+java {
+    toolchain {
+        languageVersion.set(JavaLanguageVersion.of(8))
+    }
+}
+
+mavenPublishing {
+    coordinates(
+        groupId = group as String,
+        artifactId = "bubbles-processor",
+        version = version as String
+    )
+    pom {
+        name.set("Bubbles Processor")
+        description.set("An annotation processor that generates Bubbles blueprint implementations at compile time")
+        inceptionYear.set("2024")
+        url.set("https://github.com/Revxrsal/Bubbles/")
+        licenses {
+            license {
+                name.set("MIT")
+                url.set("https://mit-license.org/")
+                distribution.set("https://mit-license.org/")
+            }
+        }
+        developers {
+            developer {
+                id.set("revxrsal")
+                name.set("Revxrsal")
+                url.set("https://github.com/Revxrsal/")
+            }
+        }
+        scm {
+            url.set("https://github.com/Revxrsal/Bubbles/")
+            connection.set("scm:git:git://github.com/Revxrsal/Bubbles.git")
+            developerConnection.set("scm:git:ssh://git@github.com/Revxrsal/Bubbles.git")
+        }
+    }
+
+    publishToMavenCentral(SonatypeHost.CENTRAL_PORTAL)
+    signAllPublications()
+}
@@ -0,0 +1,514 @@
+/*
+ * This file is part of Bubbles, licensed under the MIT License.
+ *
+ *  Copyright (c) Revxrsal <reflxction.github@gmail.com>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+package revxrsal.bubbles.processor;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.*;
+import javax.lang.model.type.*;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import java.util.*;
+
+/**
+ * Reads the properties of blueprint interfaces at compile time. This mirrors
+ * the rules of {@code BlueprintProperty.propertiesOf()}, which does the same
+ * through reflection at runtime.
+ */
+final class BlueprintModels {
+
+    static final String ARRAY_INDEX = "<arr>";
+
+    private static final String KEY = "revxrsal.bubbles.annotation.Key";
+    private static final String COMMENT = "revxrsal.bubbles.annotation.Comment";
+    private static final String POS = "revxrsal.bubbles.annotation.Pos";
+    private static final String IGNORE_METHOD = "revxrsal.bubbles.annotation.IgnoreMethod";
+    private static final String PRECOMPILED = "revxrsal.bubbles.annotation.PrecompiledBlueprint";
+
+    /**
+     * Types whose values cannot change once created, besides primitives
+     * and enums
+     */
+    private static final Set<String> VALUE_TYPES = new HashSet<>(Arrays.asList(
+            "java.lang.String", "java.lang.Boolean", "java.lang.Character", "java.lang.Byte",
+            "java.lang.Short", "java.lang.Integer", "java.lang.Long", "java.lang.Float",
+            "java.lang.Double"
+    ));
+
+    private final Elements elements;
+    private final Types types;
+
+    /**
+     * The blueprints whose implementations are generated in the current round
+     */
+    private final Set<TypeElement> generated = new HashSet<>();
+
+    BlueprintModels(ProcessingEnvironment env) {
+        this.elements = env.getElementUtils();
+        this.types = env.getTypeUtils();
+    }
+
+    /**
+     * A property of a blueprint
+     */
+    static final class Property {
+
+        final String key;
+        TypeMirror type;
+        ExecutableElement getter;
+        ExecutableElement setter;
+        TypeMirror setterType;
+        ExecutableElement wither;
+        TypeMirror witherType;
+        List<String> comments = Collections.emptyList();
+
+        Property(String key) {
+            this.key = key;
+        }
+
+        String fieldName() {
+            return getter.getSimpleName().toString();
+        }
+
+        boolean hasDefault() {
+            return getter.getModifiers().contains(Modifier.DEFAULT);
+        }
+    }
+
+    Map<String, Property> propertiesOf(TypeElement type) {
+        DeclaredType declared = (DeclaredType) type.asType();
+        List<ExecutableElement> methods = new ArrayList<>();
+        for (ExecutableElement method : ElementFilter.methodsIn(elements.getAllMembers(type))) {
+            if (method.getEnclosingElement().getKind() != ElementKind.INTERFACE)
+                continue;
+            if (method.getModifiers().contains(Modifier.STATIC) || method.getModifiers().contains(Modifier.PRIVATE))
+                continue;
+            methods.add(method);
+        }
+        // the same order as BlueprintProperty, which reads it from the class files
+        Map<ExecutableElement, Integer> order = new HashMap<>();
+        declarationOrder(type, new HashSet<>(), order);
+        methods.sort(Comparator.comparingInt(this::posOf)
+                .thenComparingInt((ExecutableElement method) -> order.getOrDefault(method, Integer.MAX_VALUE))
+                .thenComparing(method -> method.getSimpleName().toString()));
+        Map<String, Property> properties = new LinkedHashMap<>();
+        for (ExecutableElement method : methods) {
+            if (annotation(method, IGNORE_METHOD) != null) {
+                if (method.getModifiers().contains(Modifier.DEFAULT))
+                    continue;
+                else
+                    throw new IllegalArgumentException("Cannot ignore a non-default method! Ignored methods must be default");
+            }
+            parse(declared, method, properties);
+        }
+        boolean immutable = isImmutable(type);
+        if (immutable && isLazy(type))
+            throw new IllegalArgumentException("Immutable blueprints cannot be lazy");
+        for (Property value : properties.values()) {
+            if (value.type == null)
+                throw new IllegalArgumentException("Failed to infer the type of property '" + value.key + "'!");
+            if (value.getter == null)
+                throw new IllegalArgumentException("No getter exists for property '" + value.key + "'!");
+            if (immutable && value.setter != null)
+                throw new IllegalArgumentException("Immutable blueprints cannot have setters (property '" + value.key + "'). Use a with method instead.");
+            if (!immutable && value.wither != null)
+                throw new IllegalArgumentException("With methods are only supported in immutable blueprints (property '" + value.key + "')");
+        }
+        return properties;
+    }
+
+    private void parse(DeclaredType owner, ExecutableElement method, Map<String, Property> properties) {
+        boolean wither = impliesWither(owner, method);
+        String key = keyOf(method, wither);
+        ExecutableType resolved = (ExecutableType) types.asMemberOf(owner, method);
+        Property existing = properties.computeIfAbsent(key, Property::new);
+        List<String> comments = commentsOf(method);
+        if (comments != null) {
+            if (existing.comments.isEmpty())
+                existing.comments = comments;
+            else
+                throw new IllegalArgumentException("Inconsistent comments for property '" + key + "'");
+        }
+        boolean isVoid = method.getReturnType().getKind() == TypeKind.VOID;
+        if (wither) {
+            if (existing.wither != null)
+                throw new IllegalArgumentException("Found 2 with methods for property '" + key + "'!");
+            setType(existing, resolved.getParameterTypes().get(0));
+            existing.wither = method;
+            existing.witherType = resolved.getParameterTypes().get(0);
+        } else if (isVoid || method.getSimpleName().toString().startsWith("set")) {
+            if (existing.setter != null)
+                throw new IllegalArgumentException("Found 2 setters for property '" + key + "'!");
+            if (!isVoid)
+                throw new IllegalArgumentException("Setter for property '" + key + "' must return void!");
+            if (method.getParameters().isEmpty())
+                throw new IllegalArgumentException("Setter for property '" + key + "' has no parameters!");
+            if (method.getParameters().size() > 1)
+                throw new IllegalArgumentException("Setter for property '" + key + "' has more than 1 parameter!");
+            setType(existing, resolved.getParameterTypes().get(0));
+            existing.setter = method;
+            existing.setterType = resolved.getParameterTypes().get(0);
+        } else {
+            if (existing.getter != null)
+                throw new IllegalArgumentException("Found 2 getters for property '" + key + "'!");
+            if (!method.getParameters().isEmpty())
+                throw new IllegalArgumentException("Getter for property '" + key + "' cannot take parameters!");
+            setType(existing, resolved.getReturnType());
+            existing.getter = method;
+        }
+    }
+
+    private boolean impliesWither(DeclaredType owner, ExecutableElement method) {
+        return method.getSimpleName().toString().startsWith("with")
+                && method.getParameters().size() == 1
+                && method.getReturnType().getKind() == TypeKind.DECLARED
+                && types.isAssignable(types.erasure(owner), types.erasure(method.getReturnType()));
+    }
+
+    /**
+     * Records that the implementation of the given blueprint is generated
+     * in the current round
+     *
+     * @param type The blueprint interface
+     */
+    void markGenerated(TypeElement type) {
+        generated.add(type);
+    }
+
+    /**
+     * Returns the qualified name of the implementation of the given blueprint.
+     * For nested blueprints, this matches the binary name of the runtime-generated
+     * class.
+     *
+     * @param type The blueprint interface
+     * @return The qualified name of the implementation
+     */
+    String implNameOf(TypeElement type) {
+        PackageElement pkg = elements.getPackageOf(type);
+        String binaryName = elements.getBinaryName(type).toString();
+        String simpleName = binaryName.substring(binaryName.lastIndexOf('.') + 1) + "Impl";
+        return pkg.isUnnamed() ? simpleName : pkg.getQualifiedName() + "." + simpleName;
+    }
+
+    /**
+     * Tests whether the given blueprint has a precompiled implementation,
+     * either generated in the current round or already compiled
+     *
+     * @param type The blueprint interface
+     * @return true if its implementation can be constructed directly
+     */
+    boolean hasPrecompiledImpl(TypeElement type) {
+        if (generated.contains(type))
+            return true;
+        TypeElement impl = elements.getTypeElement(implNameOf(type));
+        return impl != null && annotation(impl, PRECOMPILED) != null;
+    }
+
+    /**
+     * Tests whether the given blueprint is immutable
+     *
+     * @param type The blueprint interface
+     * @return true if it's immutable
+     */
+    boolean isImmutable(TypeElement type) {
+        AnnotationValue value = annotationValue(type, BlueprintProcessor.BLUEPRINT, "immutable");
+        return value != null && (Boolean) value.getValue();
+    }
+
+    /**
+     * Tests whether the implementation of the given blueprint caches its
+     * hash code, the same way {@code BlueprintClass.cachesHashCode()} does
+     *
+     * @param type The blueprint interface
+     * @return true if the hash code is cached
+     */
+    boolean cachesHashCode(TypeElement type) {
+        return isImmutable(type) && hasValueProperties(type, new HashSet<>());
+    }
+
+    private boolean hasValueProperties(TypeElement type, Set<TypeElement> visited) {
+        if (!visited.add(type))
+            return true;
+        for (Property property : propertiesOf(type).values()) {
+            TypeMirror propertyType = property.type;
+            if (propertyType.getKind().isPrimitive())
+                continue;
+            if (propertyType.getKind() == TypeKind.DECLARED) {
+                TypeElement element = (TypeElement) ((DeclaredType) propertyType).asElement();
+                if (element.getKind() == ElementKind.ENUM || VALUE_TYPES.contains(element.getQualifiedName().toString()))
+                    continue;
+                TypeElement blueprint = asBlueprint(propertyType);
+                if (blueprint != null && isImmutable(blueprint) && hasValueProperties(blueprint, visited))
+                    continue;
+            }
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Tests whether the nested blueprints of the given blueprint are lazy
+     *
+     * @param type The blueprint interface
+     * @return true if it's lazy
+     */
+    boolean isLazy(TypeElement type) {
+        AnnotationValue value = annotationValue(type, BlueprintProcessor.BLUEPRINT, "lazy");
+        return value != null && (Boolean) value.getValue();
+    }
+
+    private void setType(Property property, TypeMirror type) {
+        if (property.type == null)
+            property.type = type;
+        else if (!types.isSameType(types.erasure(property.type), types.erasure(type)))
+            throw new IllegalArgumentException("Inconsistent types for property " + property.key + ". Received " + property.type + " and " + type + ".");
+    }
+
+    /**
+     * Computes the comments of the given blueprint, the same way
+     * {@code BlueprintClass.comments()} does.
+     *
+     * @param properties The blueprint properties
+     * @return The comments, keyed by their paths
+     */
+    Map<String, String> commentsOf(Collection<Property> properties) {
+        Map<String, String> comments = new LinkedHashMap<>();
+        computeCommentsRecursively(comments, properties, "", 0);
+        return comments;
+    }
+
+    private void computeCommentsRecursively(
+            Map<String, String> comments,
+            Collection<Property> properties,
+            String parentPath,
+            int indent
+    ) {
+        for (Property property : properties) {
+            if (property.comments.isEmpty())
+                continue;
+            String indentStr = repeat(' ', indent);
+            String commentPath = parentPath.isEmpty() ? property.key : parentPath + '.' + property.key;
+            StringJoiner commentsString = new StringJoiner("\n", "\n", "");
+            for (String comment : property.comments) {
+                commentsString.add(indentStr + "# " + comment);
+            }
+            comments.put(commentPath, commentsString.toString());
+            TypeElement blueprint = asBlueprint(property.type);
+            if (blueprint != null) {
+                computeCommentsRecursively(comments, propertiesOf(blueprint).values(), commentPath, indent + 2);
+            } else {
+                TypeElement element = asBlueprint(elementTypeOf(property.type));
+                if (element != null)
+                    computeCommentsRecursively(comments, propertiesOf(element).values(), commentPath + "." + ARRAY_INDEX, indent + 2);
+            }
+        }
+    }
+
+    /**
+     * Returns the element type of the given array or collection type
+     *
+     * @param type The type
+     * @return The element type, or {@code null} if it is neither
+     */
+    TypeMirror elementTypeOf(TypeMirror type) {
+        if (type.getKind() == TypeKind.ARRAY)
+            return ((ArrayType) type).getComponentType();
+        TypeElement collection = elements.getTypeElement("java.util.Collection");
+        if (type.getKind() == TypeKind.DECLARED && types.isAssignable(types.erasure(type), types.erasure(collection.asType()))) {
+            List<? extends TypeMirror> arguments = ((DeclaredType) type).getTypeArguments();
+            if (arguments.isEmpty())
+                return null;
+            TypeMirror argument = arguments.get(0);
+            if (argument.getKind() == TypeKind.WILDCARD)
+                argument = ((WildcardType) argument).getExtendsBound();
+            return argument;
+        }
+        return null;
+    }
+
+    /**
+     * Returns the blueprint interface of the given type, if any
+     *
+     * @param type The type
+     * @return The blueprint interface, or {@code null}
+     */
+    TypeElement asBlueprint(TypeMirror type) {
+        if (type == null || type.getKind() != TypeKind.DECLARED)
+            return null;
+        TypeElement element = (TypeElement) ((DeclaredType) type).asElement();
+        if (element.getKind() != ElementKind.INTERFACE || annotation(element, BlueprintProcessor.BLUEPRINT) == null)
+            return null;
+        return element;
+    }
+
+    /**
+     * Renders the given type as it would appear in source code, without any
+     * type annotations.
+     *
+     * @param type The type to render
+     * @return The rendered type
+     */
+    String render(TypeMirror type) {
+        switch (type.getKind()) {
+            case BOOLEAN:
+            case BYTE:
+            case SHORT:
+            case INT:
+            case LONG:
+            case CHAR:
+            case FLOAT:
+            case DOUBLE:
+            case VOID:
+                return type.getKind().name().toLowerCase(Locale.ROOT);
+            case ARRAY:
+                return render(((ArrayType) type).getComponentType()) + "[]";
+            case DECLARED: {
+                DeclaredType declared = (DeclaredType) type;
+                StringBuilder builder = new StringBuilder(((TypeElement) declared.asElement()).getQualifiedName());
+                if (!declared.getTypeArguments().isEmpty()) {
+                    StringJoiner arguments = new StringJoiner(", ", "<", ">");
+                    for (TypeMirror argument : declared.getTypeArguments())
+                        arguments.add(render(argument));
+                    builder.append(arguments);
+                }
+                return builder.toString();
+            }
+            case WILDCARD: {
+                WildcardType wildcard = (WildcardType) type;
+                if (wildcard.getExtendsBound() != null)
+                    return "? extends " + render(wildcard.getExtendsBound());
+                if (wildcard.getSuperBound() != null)
+                    return "? super " + render(wildcard.getSuperBound());
+                return "?";
+            }
+            case TYPEVAR:
+                return ((TypeVariable) type).asElement().getSimpleName().toString();
+            default:
+                return type.toString();
+        }
+    }
+
+    /**
+     * Renders the erasure of the given type
+     *
+     * @param type The type to render
+     * @return The rendered type
+     */
+    String renderErasure(TypeMirror type) {
+        return render(types.erasure(type));
+    }
+
+    /**
+     * Returns the qualified name of the erasure of the given type
+     *
+     * @param type The type
+     * @return The qualified name, or {@code null} if it is not a class type
+     */
+    String qualifiedName(TypeMirror type) {
+        if (type.getKind() != TypeKind.DECLARED)
+            return null;
+        return ((TypeElement) ((DeclaredType) type).asElement()).getQualifiedName().toString();
+    }
+
+    /**
+     * Collects the methods of the given interface, then the ones of its
+     * superinterfaces, in the order they are declared in
+     */
+    private void declarationOrder(TypeElement type, Set<TypeElement> visited, Map<ExecutableElement, Integer> order) {
+        if (!visited.add(type))
+            return;
+        for (ExecutableElement method : ElementFilter.methodsIn(type.getEnclosedElements()))
+            order.putIfAbsent(method, order.size());
+        for (TypeMirror parent : type.getInterfaces())
+            declarationOrder((TypeElement) types.asElement(parent), visited, order);
+    }
+
+    private int posOf(ExecutableElement method) {
+        AnnotationValue value = annotationValue(method, POS);
+        // unannotated methods come first
+        return value == null ? Integer.MIN_VALUE : (Integer) value.getValue();
+    }
+
+    private String keyOf(ExecutableElement method, boolean wither) {
+        AnnotationValue key = annotationValue(method, KEY);
+        if (key != null)
+            return (String) key.getValue();
+        if (wither)
+            return lowerFirst(method.getSimpleName().toString().substring(4));
+        return lowerFirst(fromName(method.getSimpleName().toString()));
+    }
+
+    private List<String> commentsOf(ExecutableElement method) {
+        AnnotationValue value = annotationValue(method, COMMENT);
+        if (value == null)
+            return null;
+        List<String> comments = new ArrayList<>();
+        for (Object line : (List<?>) value.getValue())
+            comments.add((String) ((AnnotationValue) line).getValue());
+        return comments;
+    }
+
+    private static String fromName(String name) {
+        if (name.startsWith("get") || name.startsWith("set"))
+            return name.substring(3);
+        else if (name.startsWith("is"))
+            return name.substring(2);
+        return name;
+    }
+
+    private static String lowerFirst(String name) {
+        if (name.isEmpty())
+            return name;
+        return Character.toLowerCase(name.charAt(0)) + name.substring(1);
+    }
+
+    private static String repeat(char v, int times) {
+        char[] c = new char[times];
+        Arrays.fill(c, v);
+        return new String(c);
+    }
+
+    private static AnnotationMirror annotation(Element element, String name) {
+        for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            if (((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().contentEquals(name))
+                return mirror;
+        }
+        return null;
+    }
+
+    private static AnnotationValue annotationValue(Element element, String name) {
+        return annotationValue(element, name, "value");
+    }
+
+    private static AnnotationValue annotationValue(Element element, String name, String member) {
+        AnnotationMirror mirror = annotation(element, name);
+        if (mirror == null)
+            return null;
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : mirror.getElementValues().entrySet()) {
+            if (entry.getKey().getSimpleName().contentEquals(member))
+                return entry.getValue();
+        }
+        return null;
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * This file is part of Bubbles, licensed under the MIT License.
+ *
+ *  Copyright (c) Revxrsal <reflxction.github@gmail.com>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+package revxrsal.bubbles.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An annotation processor that generates the implementations of
+ * {@code @Blueprint} interfaces at compile time.
+ * <p>
+ * The generated classes are equivalent to the ones Bubbles generates at runtime,
+ * and are picked up by {@code Blueprints.from()} when present, which saves the
+ * cost of generating them on first use. Generic blueprints are skipped, and are
+ * still generated at runtime.
+ */
+@SupportedAnnotationTypes(BlueprintProcessor.BLUEPRINT)
+public final class BlueprintProcessor extends AbstractProcessor {
+
+    static final String BLUEPRINT = "revxrsal.bubbles.annotation.Blueprint";
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        TypeElement blueprint = processingEnv.getElementUtils().getTypeElement(BLUEPRINT);
+        if (blueprint == null)
+            return false;
+        BlueprintModels models = new BlueprintModels(processingEnv);
+        List<TypeElement> types = new ArrayList<>();
+        for (Element element : roundEnv.getElementsAnnotatedWith(blueprint)) {
+            if (element.getKind() != ElementKind.INTERFACE) {
+                error("@Blueprint can only be used on interfaces", element);
+                continue;
+            }
+            TypeElement type = (TypeElement) element;
+            if (!type.getTypeParameters().isEmpty())
+                continue;
+            types.add(type);
+            // nested blueprints of this round can be constructed directly
+            models.markGenerated(type);
+        }
+        for (TypeElement type : types) {
+            try {
+                Map<String, BlueprintModels.Property> properties = models.propertiesOf(type);
+                generate(models, type, properties);
+            } catch (IllegalArgumentException e) {
+                error(e.getMessage(), type);
+            }
+        }
+        return false;
+    }
+
+    private void generate(
+            BlueprintModels models,
+            TypeElement type,
+            Map<String, BlueprintModels.Property> properties
+    ) {
+        ImplSourceWriter source = new ImplSourceWriter(processingEnv, models, type, properties);
+        try {
+            JavaFileObject file = processingEnv.getFiler().createSourceFile(source.qualifiedName(), type);
+            try (Writer writer = file.openWriter()) {
+                writer.write(source.generate());
+            }
+        } catch (IOException e) {
+            error("Failed to generate the implementation of " + type.getQualifiedName() + ": " + e, type);
+        }
+    }
+
+    private void error(String message, Element element) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+}
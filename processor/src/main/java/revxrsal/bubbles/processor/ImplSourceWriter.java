@@ -0,0 +1,467 @@
+/*
+ * This file is part of Bubbles, licensed under the MIT License.
+ *
+ *  Copyright (c) Revxrsal <reflxction.github@gmail.com>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+package revxrsal.bubbles.processor;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+
+/**
+ * Writes the Java source of a blueprint implementation. The generated class
+ * has the same shape as the one {@code BlueprintGenerator} generates at runtime.
+ */
+final class ImplSourceWriter {
+
+    private static final String SERIALIZED_NAME = "com.google.gson.annotations.SerializedName";
+    private static final String BLUEPRINTS = "revxrsal.bubbles.blueprint.Blueprints";
+    private static final String PRECOMPILED = "revxrsal.bubbles.annotation.PrecompiledBlueprint";
+    private static final String GENERATED_BLUEPRINT = "revxrsal.bubbles.blueprint.GeneratedBlueprint";
+    private static final String LAZY_BLUEPRINT = "revxrsal.bubbles.blueprint.LazyBlueprint";
+
+    /**
+     * The length assumed for each value when presizing the builder of
+     * {@code toString()}. This matches {@code BlueprintGenerator}.
+     */
+    private static final int EXPECTED_VALUE_LENGTH = 8;
+
+    private final BlueprintModels models;
+    private final TypeElement type;
+    private final Map<String, BlueprintModels.Property> properties;
+    private final String packageName;
+    private final String simpleName;
+    private final boolean hasGson;
+    private final boolean immutable;
+    private final boolean cachesHashCode;
+    private final boolean lazy;
+    private final StringBuilder out = new StringBuilder();
+
+    ImplSourceWriter(
+            ProcessingEnvironment env,
+            BlueprintModels models,
+            TypeElement type,
+            Map<String, BlueprintModels.Property> properties
+    ) {
+        this.models = models;
+        this.type = type;
+        this.properties = properties;
+        PackageElement pkg = env.getElementUtils().getPackageOf(type);
+        this.packageName = pkg.isUnnamed() ? "" : pkg.getQualifiedName().toString();
+        String binaryName = env.getElementUtils().getBinaryName(type).toString();
+        this.simpleName = binaryName.substring(binaryName.lastIndexOf('.') + 1) + "Impl";
+        this.hasGson = env.getElementUtils().getTypeElement(SERIALIZED_NAME) != null;
+        this.immutable = models.isImmutable(type);
+        this.cachesHashCode = models.cachesHashCode(type);
+        this.lazy = models.isLazy(type);
+    }
+
+    /**
+     * The qualified name of the generated class
+     *
+     * @return The qualified name
+     * @see BlueprintModels#implNameOf(TypeElement)
+     */
+    String qualifiedName() {
+        return models.implNameOf(type);
+    }
+
+    String generate() {
+        String blueprint = type.getQualifiedName().toString();
+        if (!packageName.isEmpty())
+            line(0, "package " + packageName + ";");
+        line(0, "");
+        out.append('@').append(PRECOMPILED).append("(comments = {");
+        boolean first = true;
+        for (Map.Entry<String, String> comment : models.commentsOf(properties.values()).entrySet()) {
+            if (!first)
+                out.append(',');
+            first = false;
+            out.append("\n        ").append(literal(comment.getKey()))
+                    .append(", ").append(literal(comment.getValue()));
+        }
+        line(0, "})");
+        line(0, "public class " + simpleName + " implements " + blueprint + ", " + GENERATED_BLUEPRINT + " {");
+
+        for (BlueprintModels.Property property : properties.values()) {
+            line(0, "");
+            if (hasGson && !property.fieldName().equals(property.key))
+                line(1, "@" + SERIALIZED_NAME + "(" + literal(property.key) + ")");
+            line(1, "public " + (immutable ? "final " : "") + models.render(property.type) + " " + property.fieldName() + ";");
+            if (isLazy(property))
+                line(1, "public transient volatile " + LAZY_BLUEPRINT + " " + property.fieldName() + "$lazy;");
+        }
+        if (cachesHashCode) {
+            line(0, "");
+            line(1, "private transient int $hash;");
+        }
+
+        line(0, "");
+        line(1, "public " + simpleName + "() {");
+        for (BlueprintModels.Property property : properties.values()) {
+            String initializer = initializerOf(blueprint, property);
+            // final fields must always be assigned
+            if (initializer == null && immutable)
+                initializer = zeroOf(property.type);
+            if (initializer != null)
+                line(2, "this." + property.fieldName() + " = " + initializer + ";");
+        }
+        line(1, "}");
+
+        if (immutable)
+            writeAllArgsConstructor();
+
+        for (BlueprintModels.Property property : properties.values()) {
+            String fieldType = models.render(property.type);
+            line(0, "");
+            line(1, "@Override");
+            if (isLazy(property))
+                line(1, "@SuppressWarnings(\"unchecked\")");
+            line(1, "public " + fieldType + " " + property.fieldName() + "() {");
+            if (isLazy(property)) {
+                line(2, LAZY_BLUEPRINT + " lazy = this." + property.fieldName() + "$lazy;");
+                line(2, "if (lazy != null) {");
+                line(3, "this." + property.fieldName() + " = (" + fieldType + ") lazy.materialize();");
+                line(3, "this." + property.fieldName() + "$lazy = null;");
+                line(2, "}");
+            }
+            line(2, "return this." + property.fieldName() + ";");
+            line(1, "}");
+            if (property.setter != null) {
+                VariableElement parameter = property.setter.getParameters().get(0);
+                line(0, "");
+                line(1, "@Override");
+                line(1, "public void " + property.setter.getSimpleName() + "(" + models.render(property.setterType) + " " + parameter.getSimpleName() + ") {");
+                line(2, "this." + property.fieldName() + " = " + parameter.getSimpleName() + ";");
+                if (isLazy(property))
+                    line(2, "this." + property.fieldName() + "$lazy = null;");
+                line(1, "}");
+            }
+            if (property.wither != null)
+                writeWither(property);
+        }
+
+        line(0, "");
+        line(1, "@Override");
+        line(1, "public String toString() {");
+        String prefix = type.getSimpleName() + "(";
+        int capacity = prefix.length() + 1;
+        for (BlueprintModels.Property property : properties.values())
+            capacity += property.key.length() + 3 + EXPECTED_VALUE_LENGTH;
+        line(2, "StringBuilder builder = new StringBuilder(" + capacity + ");");
+        for (BlueprintModels.Property property : properties.values()) {
+            line(2, "builder.append(" + literal(prefix + property.key + "=") + ").append(" + toStringOf(property) + ");");
+            prefix = ", ";
+        }
+        if (properties.isEmpty())
+            line(2, "builder.append(" + literal(prefix) + ");");
+        line(2, "return builder.append(')').toString();");
+        line(1, "}");
+        writeEquals();
+        writeHashCode(cachesHashCode);
+        writeDiff();
+        line(0, "}");
+        return out.toString();
+    }
+
+    /**
+     * Returns the properties in the order of the parameters of the all-args
+     * constructor. This matches {@code BlueprintClass.constructorOrder()}.
+     *
+     * @return The properties in constructor order
+     */
+    private List<BlueprintModels.Property> constructorOrder() {
+        List<BlueprintModels.Property> order = new ArrayList<>(properties.values());
+        order.sort(Comparator.comparing(property -> property.key));
+        return order;
+    }
+
+    private void writeAllArgsConstructor() {
+        StringJoiner parameters = new StringJoiner(", ");
+        for (BlueprintModels.Property property : constructorOrder())
+            parameters.add(models.render(property.type) + " " + property.fieldName());
+        line(0, "");
+        line(1, "public " + simpleName + "(" + parameters + ") {");
+        for (BlueprintModels.Property property : constructorOrder())
+            line(2, "this." + property.fieldName() + " = " + property.fieldName() + ";");
+        line(1, "}");
+    }
+
+    private void writeWither(BlueprintModels.Property property) {
+        VariableElement parameter = property.wither.getParameters().get(0);
+        StringJoiner arguments = new StringJoiner(", ");
+        for (BlueprintModels.Property p : constructorOrder())
+            arguments.add(p == property ? parameter.getSimpleName().toString() : "this." + p.fieldName());
+        line(0, "");
+        line(1, "@Override");
+        line(1, "public " + models.render(property.wither.getReturnType()) + " " + property.wither.getSimpleName()
+                + "(" + models.render(property.witherType) + " " + parameter.getSimpleName() + ") {");
+        line(2, "return new " + simpleName + "(" + arguments + ");");
+        line(1, "}");
+    }
+
+    private void writeEquals() {
+        line(0, "");
+        line(1, "@Override");
+        line(1, "public boolean equals(Object o) {");
+        line(2, "if (this == o)");
+        line(3, "return true;");
+        line(2, "if (!(o instanceof " + simpleName + "))");
+        line(3, "return false;");
+        if (properties.isEmpty()) {
+            line(2, "return true;");
+        } else {
+            line(2, simpleName + " other = (" + simpleName + ") o;");
+            StringJoiner comparisons = new StringJoiner("\n" + indent(4) + "&& ", indent(2) + "return ", ";");
+            for (BlueprintModels.Property property : properties.values())
+                comparisons.add(equalityOf(property));
+            out.append(comparisons).append('\n');
+        }
+        line(1, "}");
+    }
+
+    /**
+     * Writes a {@code hashCode()} consistent with {@link #writeEquals()}. When
+     * {@code cached} is true, the hash is stored in {@code $hash} the first time
+     * it is computed.
+     *
+     * @param cached Whether to cache the hash code
+     */
+    private void writeHashCode(boolean cached) {
+        line(0, "");
+        line(1, "@Override");
+        line(1, "public int hashCode() {");
+        int indent = 2;
+        if (cached) {
+            line(2, "int h = $hash;");
+            line(2, "if (h == 0) {");
+            line(3, "h = 1;");
+            indent = 3;
+        } else {
+            line(2, "int h = 1;");
+        }
+        for (BlueprintModels.Property property : properties.values())
+            line(indent, "h = 31 * h + " + hashOf(property) + ";");
+        if (cached) {
+            line(3, "$hash = h;");
+            line(2, "}");
+        }
+        line(2, "return h;");
+        line(1, "}");
+    }
+
+    private void writeDiff() {
+        line(0, "");
+        line(1, "@Override");
+        line(1, "public java.util.Set<String> diff(Object o) {");
+        line(2, simpleName + " other = (" + simpleName + ") o;");
+        line(2, "java.util.Set<String> changes = new java.util.LinkedHashSet<>();");
+        for (BlueprintModels.Property property : properties.values()) {
+            line(2, "if (!(" + equalityOf(property) + "))");
+            if (models.asBlueprint(property.type) != null)
+                line(3, GENERATED_BLUEPRINT + ".diffNested(changes, " + literal(property.key) + ", "
+                        + valueOf("this", property) + ", " + valueOf("other", property) + ");");
+            else
+                line(3, "changes.add(" + literal(property.key) + ");");
+        }
+        line(2, "return changes;");
+        line(1, "}");
+    }
+
+    private String equalityOf(BlueprintModels.Property property) {
+        String a = valueOf("this", property), b = valueOf("other", property);
+        switch (property.type.getKind()) {
+            case BOOLEAN:
+            case BYTE:
+            case SHORT:
+            case CHAR:
+            case INT:
+            case LONG:
+                return a + " == " + b;
+            case FLOAT:
+                return "Float.compare(" + a + ", " + b + ") == 0";
+            case DOUBLE:
+                return "Double.compare(" + a + ", " + b + ") == 0";
+            case ARRAY:
+                return "java.util.Arrays." + (isPrimitiveArray(property.type) ? "equals" : "deepEquals") + "(" + a + ", " + b + ")";
+            default:
+                return "java.util.Objects.equals(" + a + ", " + b + ")";
+        }
+    }
+
+    private String toStringOf(BlueprintModels.Property property) {
+        String value = valueOf("this", property);
+        if (property.type.getKind() == TypeKind.ARRAY)
+            return "java.util.Arrays.toString(" + value + ")";
+        return value;
+    }
+
+    private String hashOf(BlueprintModels.Property property) {
+        String value = valueOf("this", property);
+        switch (property.type.getKind()) {
+            case BYTE:
+            case SHORT:
+            case CHAR:
+            case INT:
+                return value;
+            case BOOLEAN:
+                return "Boolean.hashCode(" + value + ")";
+            case LONG:
+                return "Long.hashCode(" + value + ")";
+            case FLOAT:
+                return "Float.hashCode(" + value + ")";
+            case DOUBLE:
+                return "Double.hashCode(" + value + ")";
+            case ARRAY:
+                return "java.util.Arrays." + (isPrimitiveArray(property.type) ? "hashCode" : "deepHashCode") + "(" + value + ")";
+            default:
+                return "java.util.Objects.hashCode(" + value + ")";
+        }
+    }
+
+    private boolean isLazy(BlueprintModels.Property property) {
+        return lazy && models.asBlueprint(property.type) != null;
+    }
+
+    /**
+     * Returns the expression of the value of the given property. Lazy
+     * properties go through their getter, so that they are deserialized first.
+     *
+     * @param instance The instance expression
+     * @param property The property
+     * @return The value expression
+     */
+    private String valueOf(String instance, BlueprintModels.Property property) {
+        if (isLazy(property))
+            return instance + "." + property.fieldName() + "()";
+        return instance + "." + property.fieldName();
+    }
+
+    private static boolean isPrimitiveArray(TypeMirror type) {
+        return ((ArrayType) type).getComponentType().getKind().isPrimitive();
+    }
+
+    private static String zeroOf(TypeMirror type) {
+        switch (type.getKind()) {
+            case BOOLEAN:
+                return "false";
+            case BYTE:
+            case SHORT:
+            case CHAR:
+            case INT:
+            case LONG:
+            case FLOAT:
+            case DOUBLE:
+                return "0";
+            default:
+                return "null";
+        }
+    }
+
+    private String initializerOf(String blueprint, BlueprintModels.Property property) {
+        TypeMirror type = property.type;
+        if (property.hasDefault())
+            return blueprint + ".super." + property.fieldName() + "()";
+        TypeElement nested = models.asBlueprint(type);
+        if (nested != null && nested.getTypeParameters().isEmpty() && models.hasPrecompiledImpl(nested))
+            return "new " + models.implNameOf(nested) + "()";
+        if (nested != null)
+            return BLUEPRINTS + ".from(" + models.renderErasure(type) + ".class).createDefault()";
+        if (type.getKind() == TypeKind.ARRAY) {
+            String erasure = models.renderErasure(type);
+            // new T[0] for T[], and new T[0][] for T[][]
+            int bracket = erasure.indexOf('[');
+            return "new " + erasure.substring(0, bracket) + "[0]" + erasure.substring(bracket + 2);
+        }
+        String name = models.qualifiedName(type);
+        if (name == null)
+            return null;
+        switch (name) {
+            case "java.util.List":
+            case "java.lang.Iterable":
+            case "java.util.Collection":
+                return "new java.util.ArrayList<>()";
+            case "java.util.Set":
+                return "new java.util.LinkedHashSet<>()";
+            case "java.util.Map":
+                return "new java.util.LinkedHashMap<>()";
+            case "revxrsal.bubbles.collection.IntList":
+            case "revxrsal.bubbles.collection.LongList":
+            case "revxrsal.bubbles.collection.DoubleList":
+            case "revxrsal.bubbles.collection.IntSet":
+            case "revxrsal.bubbles.collection.LongSet":
+                return "new " + name + "()";
+            default:
+                return null;
+        }
+    }
+
+    private void line(int indent, String text) {
+        out.append(indent(indent)).append(text).append('\n');
+    }
+
+    private static String indent(int indent) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < indent; i++)
+            builder.append("    ");
+        return builder.toString();
+    }
+
+    private static String literal(String value) {
+        StringBuilder builder = new StringBuilder("\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    builder.append("\\\"");
+                    break;
+                case '\\':
+                    builder.append("\\\\");
+                    break;
+                case '\n':
+                    builder.append("\\n");
+                    break;
+                case '\r':
+                    builder.append("\\r");
+                    break;
+                case '\t':
+                    builder.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20 || c > 0x7e)
+                        builder.append(String.format("\\u%04x", (int) c));
+                    else
+                        builder.append(c);
+            }
+        }
+        return builder.append('"').toString();
+    }
+}
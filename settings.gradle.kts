@@ -1,2 +1,3 @@
 rootProject.name = "Bubbles"
 
+include("processor")
@@ -0,0 +1,173 @@
+/*
+ * This file is part of Bubbles, licensed under the MIT License.
+ *
+ *  Copyright (c) Revxrsal <reflxction.github@gmail.com>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+package revxrsal.bubbles.benchmark;
+
+import com.google.gson.JsonElement;
+import org.jetbrains.annotations.NotNull;
+import org.openjdk.jmh.annotations.*;
+import revxrsal.bubbles.blueprint.BlueprintClass;
+import revxrsal.bubbles.yml.ArrayCommentStyle;
+import revxrsal.bubbles.yml.CommentedConfiguration;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for reading and writing {@link CommentedConfiguration}s.
+ * <p>
+ * The generated configurations have {@link #size} values spread over
+ * {@link #depth} levels of sections. Every tenth value is a list, so that
+ * the {@link ArrayCommentStyle} matters, and {@link #commentDensity} is the
+ * fraction of paths that have a comment.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConfigurationBenchmark {
+
+    @Param({"100", "10000"})
+    private int size;
+
+    @Param({"1", "3"})
+    private int depth;
+
+    @Param({"0", "0.5"})
+    private double commentDensity;
+
+    @Param({"COMMENT_FIRST_ELEMENT", "COMMENT_ALL_ELEMENTS"})
+    private ArrayCommentStyle arrayCommentStyle;
+
+    private Path directory;
+    private CommentedConfiguration config;
+    private String firstKey;
+    private String leafPath;
+    private int counter = 0;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("bubbles-benchmark");
+        Map<String, Object> data = new LinkedHashMap<>();
+        Map<String, String> comments = new HashMap<>();
+        generate(data, comments);
+        firstKey = data.keySet().iterator().next();
+
+        config = CommentedConfiguration.from(directory.resolve("config.yml"), arrayCommentStyle);
+        config.setComments(comments);
+        config.setTo(data);
+        config.save();
+        config.load();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files)
+                Files.delete(file);
+        }
+        Files.delete(directory);
+    }
+
+    @Benchmark
+    public JsonElement load() {
+        config.load();
+        return config.getData();
+    }
+
+    @Benchmark
+    public Map<?, ?> loadAs() {
+        return config.loadAs(Map.class);
+    }
+
+    @Benchmark
+    public void save() {
+        config.save();
+    }
+
+    @Benchmark
+    public void saveChanges() {
+        config.set(leafPath, "changed value " + counter++);
+        config.saveChanges();
+    }
+
+    @Benchmark
+    public Object get() {
+        return config.get(firstKey, Object.class);
+    }
+
+    private void generate(@NotNull Map<String, Object> data, @NotNull Map<String, String> comments) {
+        Random random = new Random(42);
+        int fanout = (int) Math.ceil(Math.pow(size, 1.0 / depth));
+        for (int i = 0; i < size; i++) {
+            Map<String, Object> section = data;
+            String path = "";
+            int index = i;
+            for (int level = depth - 1; level > 0; level--) {
+                String key = "section" + (index / pow(fanout, level)) % fanout;
+                path = path.isEmpty() ? key : path + '.' + key;
+                section = section(section, key);
+                addComment(comments, random, path);
+            }
+            String key = "key" + index % fanout;
+            path = path.isEmpty() ? key : path + '.' + key;
+            if (i % 10 == 0) {
+                List<String> list = new ArrayList<>();
+                for (int j = 0; j < 5; j++)
+                    list.add("element " + j);
+                section.put(key, list);
+                addComment(comments, random, path + '.' + BlueprintClass.ARRAY_INDEX);
+            } else if (i % 3 == 1) {
+                section.put(key, i);
+            } else {
+                section.put(key, "value " + i);
+                if (leafPath == null)
+                    leafPath = path;
+            }
+            addComment(comments, random, path);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> section(@NotNull Map<String, Object> parent, @NotNull String key) {
+        return (Map<String, Object>) parent.computeIfAbsent(key, k -> new LinkedHashMap<>());
+    }
+
+    private void addComment(@NotNull Map<String, String> comments, @NotNull Random random, @NotNull String path) {
+        if (!comments.containsKey(path) && random.nextDouble() < commentDensity)
+            comments.put(path, "\n# The comment of " + path);
+    }
+
+    private static int pow(int base, int exponent) {
+        int result = 1;
+        for (int i = 0; i < exponent; i++)
+            result *= base;
+        return result;
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * This file is part of Bubbles, licensed under the MIT License.
+ *
+ *  Copyright (c) Revxrsal <reflxction.github@gmail.com>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+package revxrsal.bubbles.blueprint;
+
+import com.google.gson.Gson;
+import org.openjdk.jmh.annotations.*;
+import revxrsal.bubbles.annotation.Blueprint;
+import revxrsal.bubbles.annotation.Comment;
+import revxrsal.bubbles.annotation.Key;
+import revxrsal.bubbles.yml.CommentedConfiguration;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for generating blueprint implementations, and for using the
+ * generated implementations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BlueprintBenchmark {
+
+    private static final Gson GSON = CommentedConfiguration.GSON;
+
+    private Arena arena;
+    private String json;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        arena = Blueprints.from(Arena.class).createDefault();
+        json = GSON.toJson(arena, Arena.class);
+    }
+
+    /**
+     * Generates the bytecode of an implementation, without defining it
+     */
+    @Benchmark
+    public byte[] generate() {
+        return new BlueprintGenerator(BlueprintClass.from(Arena.class)).toByteArray();
+    }
+
+    /**
+     * Looks up the (already generated) blueprint class
+     */
+    @Benchmark
+    public BlueprintClass from() {
+        return Blueprints.from(Arena.class);
+    }
+
+    @Benchmark
+    public Arena createDefault() {
+        return Blueprints.from(Arena.class).createDefault();
+    }
+
+    @Benchmark
+    public String getter() {
+        return arena.name();
+    }
+
+    @Benchmark
+    public String generatedToString() {
+        return arena.toString();
+    }
+
+    @Benchmark
+    public String serialize() {
+        return GSON.toJson(arena, Arena.class);
+    }
+
+    @Benchmark
+    public Arena deserialize() {
+        return GSON.fromJson(json, Arena.class);
+    }
+
+    @Blueprint
+    public interface Arena {
+
+        @Key("arena-name")
+        @Comment("The arena name")
+        default String name() {
+            return "Default name";
+        }
+
+        @Comment("The arena capacity")
+        default int capacity() {
+            return 16;
+        }
+
+        @Comment("Whether the arena is enabled")
+        default boolean enabled() {
+            return true;
+        }
+
+        @Comment("The lobby spawn")
+        Spawn lobby();
+
+        @Comment("The arena spawns")
+        default List<Spawn> spawns() {
+            return Arrays.asList(Blueprints.from(Spawn.class).createDefault(), Blueprints.from(Spawn.class).createDefault());
+        }
+
+        @Comment("The arena rewards")
+        default List<String> rewards() {
+            return Arrays.asList("diamond", "emerald", "gold");
+        }
+    }
+
+    @Blueprint
+    public interface Spawn {
+
+        default String world() {
+            return "world";
+        }
+
+        default double x() {
+            return 12.5;
+        }
+
+        default double y() {
+            return 64;
+        }
+
+        default double z() {
+            return -3.5;
+        }
+    }
+}
@@ -31,4 +31,34 @@ import java.lang.annotation.Target;
 @Target(ElementType.TYPE)
 @Retention(RetentionPolicy.RUNTIME)
 public @interface Blueprint {
+
+    /**
+     * Whether the generated implementation should be immutable.
+     * <p>
+     * Immutable implementations have final fields and implement {@code equals()}
+     * and {@code hashCode()}. The hash code is cached when all the properties are
+     * primitives, strings, enums or such immutable blueprints, as collections and
+     * arrays may still be changed through the getters. They cannot have setters.
+     * Instead, they may declare {@code with} methods that return a copy with
+     * one property changed:
+     * <pre>{@code
+     * Arena withName(String name);
+     * }</pre>
+     *
+     * @return Whether the implementation is immutable
+     */
+    boolean immutable() default false;
+
+    /**
+     * Whether nested blueprint properties should be deserialized lazily.
+     * <p>
+     * Lazy properties keep the parsed content of their section, and only
+     * deserialize it the first time their getter is called. This saves
+     * work for large configurations where only a few sections are used.
+     * <p>
+     * Lazy blueprints cannot be immutable.
+     *
+     * @return Whether nested blueprints are deserialized lazily
+     */
+    boolean lazy() default false;
 }
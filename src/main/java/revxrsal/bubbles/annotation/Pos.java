@@ -7,7 +7,11 @@ import java.lang.annotation.Target;
 
 /**
  * Sets the index of the blueprint field. Shortened for brevity. Lower values
- * come first
+ * come first.
+ * <p>
+ * Fields without an index come before the ones that have it. Fields with the
+ * same index are kept in the order they are declared in, starting with the
+ * blueprint itself and then its superinterfaces.
  */
 @Target(ElementType.METHOD)
 @Retention(RetentionPolicy.RUNTIME)
@@ -23,13 +23,16 @@
  */
 package revxrsal.bubbles.blueprint;
 
+import com.google.gson.TypeAdapter;
 import com.google.gson.annotations.SerializedName;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
 import org.objectweb.asm.Type;
 import org.objectweb.asm.commons.Method;
 
-import java.util.ArrayList;
-import java.util.LinkedHashMap;
-import java.util.LinkedHashSet;
+import java.io.IOException;
+import java.util.*;
 
 final class AsmConstants {
 
@@ -39,13 +42,75 @@ final class AsmConstants {
     public static final Type LINKED_HASH_MAP = Type.getType(LinkedHashMap.class);
     public static final Method NO_ARG_CONSTRUCTOR = Method.getMethod("void <init>()");
 
-    public static final Type TO_STRING_BUILDER = Type.getType(GeneratedToStringBuilder.class);
-    public static final Method TO_STRING_BUILDER_CONSTRUCTOR = Method.getMethod("void <init>(java.lang.String)");
-    public static final Method TO_STRING_APPEND = Method.getMethod("void append(java.lang.String, java.lang.Object)");
+    public static final Type STRING_BUILDER = Type.getType(StringBuilder.class);
+    public static final Method STRING_BUILDER_CONSTRUCTOR = Method.getMethod("void <init>(int)");
     public static final Method TO_STRING = Method.getMethod("java.lang.String toString()");
 
     public static final Type SERIALIZED_NAME = Type.getType(SerializedName.class);
 
+    public static final Type STRING = Type.getType(String.class);
+    public static final Type BOOLEAN = Type.getType(Boolean.class);
+    public static final Type LONG = Type.getType(Long.class);
+    public static final Type FLOAT = Type.getType(Float.class);
+    public static final Type DOUBLE = Type.getType(Double.class);
+    public static final Type OBJECT_ARRAY = Type.getType(Object[].class);
+    public static final Type OBJECTS = Type.getType(Objects.class);
+    public static final Type ARRAYS = Type.getType(Arrays.class);
+    public static final Method OBJECTS_EQUALS = Method.getMethod("boolean equals(java.lang.Object, java.lang.Object)");
+    public static final Method OBJECTS_HASH_CODE = Method.getMethod("int hashCode(java.lang.Object)");
+    public static final String HASH_FIELD = "$hash";
+
+    public static final Type GENERATED_BLUEPRINT = Type.getType(GeneratedBlueprint.class);
+    public static final Method DIFF = Method.getMethod("java.util.Set diff(java.lang.Object)");
+    public static final Method DIFF_NESTED = Method.getMethod("void diffNested(java.util.Set, java.lang.String, java.lang.Object, java.lang.Object)");
+    public static final Method SET_ADD = Method.getMethod("boolean add(java.lang.Object)");
+
+    public static final Type LAZY_BLUEPRINT = Type.getType(LazyBlueprint.class);
+    public static final Method LAZY_CONSTRUCTOR = Method.getMethod("void <init>(com.google.gson.stream.JsonReader, com.google.gson.TypeAdapter)");
+    public static final Method LAZY_MATERIALIZE = Method.getMethod("java.lang.Object materialize()");
+    public static final Type IO_EXCEPTION = Type.getType(IOException.class);
+    public static final Method HASH_CODE = Method.getMethod("int hashCode()");
+    public static final Method EQUALS = Method.getMethod("boolean equals(java.lang.Object)");
+    public static final Method STRING_VALUE_OF_CHAR = Method.getMethod("java.lang.String valueOf(char)");
+
+    public static final Type TYPE_ADAPTER = Type.getType(TypeAdapter.class);
+    public static final Type TYPE_ADAPTER_ARRAY = Type.getType(TypeAdapter[].class);
+    public static final Type GENERATED_ADAPTER = Type.getType(GeneratedTypeAdapter.class);
+    public static final Method ADAPTER_READ_BOOLEAN = Method.getMethod("boolean readBoolean(com.google.gson.stream.JsonReader)");
+    public static final Method ADAPTER_READ_BYTE = Method.getMethod("byte readByte(com.google.gson.stream.JsonReader)");
+    public static final Method ADAPTER_READ_SHORT = Method.getMethod("short readShort(com.google.gson.stream.JsonReader)");
+    public static final Method ADAPTER_READ_CHAR = Method.getMethod("char readChar(com.google.gson.stream.JsonReader)");
+    public static final Method ADAPTER_CONSTRUCTOR = Method.getMethod("void <init>(com.google.gson.TypeAdapter[])");
+    public static final Method ADAPTER_WRITE = Method.getMethod("void write(com.google.gson.stream.JsonWriter, java.lang.Object)");
+    public static final Method ADAPTER_READ = Method.getMethod("java.lang.Object read(com.google.gson.stream.JsonReader)");
+    public static final Method TYPE_ADAPTER_WRITE = ADAPTER_WRITE;
+    public static final Method TYPE_ADAPTER_READ = ADAPTER_READ;
+
+    public static final Type JSON_WRITER = Type.getType(JsonWriter.class);
+    public static final Method JSON_WRITER_BEGIN_OBJECT = Method.getMethod("com.google.gson.stream.JsonWriter beginObject()");
+    public static final Method JSON_WRITER_END_OBJECT = Method.getMethod("com.google.gson.stream.JsonWriter endObject()");
+    public static final Method JSON_WRITER_NAME = Method.getMethod("com.google.gson.stream.JsonWriter name(java.lang.String)");
+    public static final Method JSON_WRITER_NULL_VALUE = Method.getMethod("com.google.gson.stream.JsonWriter nullValue()");
+    public static final Method JSON_WRITER_STRING = Method.getMethod("com.google.gson.stream.JsonWriter value(java.lang.String)");
+    public static final Method JSON_WRITER_BOOLEAN = Method.getMethod("com.google.gson.stream.JsonWriter value(boolean)");
+    public static final Method JSON_WRITER_LONG = Method.getMethod("com.google.gson.stream.JsonWriter value(long)");
+    public static final Method JSON_WRITER_FLOAT = Method.getMethod("com.google.gson.stream.JsonWriter value(float)");
+    public static final Method JSON_WRITER_NUMBER = Method.getMethod("com.google.gson.stream.JsonWriter value(java.lang.Number)");
+    public static final Method JSON_WRITER_DOUBLE = Method.getMethod("com.google.gson.stream.JsonWriter value(double)");
+
+    public static final Type JSON_READER = Type.getType(JsonReader.class);
+    public static final Type JSON_TOKEN = Type.getType(JsonToken.class);
+    public static final Method JSON_READER_PEEK = Method.getMethod("com.google.gson.stream.JsonToken peek()");
+    public static final Method JSON_READER_BEGIN_OBJECT = Method.getMethod("void beginObject()");
+    public static final Method JSON_READER_END_OBJECT = Method.getMethod("void endObject()");
+    public static final Method JSON_READER_HAS_NEXT = Method.getMethod("boolean hasNext()");
+    public static final Method JSON_READER_NEXT_NAME = Method.getMethod("java.lang.String nextName()");
+    public static final Method JSON_READER_NEXT_NULL = Method.getMethod("void nextNull()");
+    public static final Method JSON_READER_SKIP_VALUE = Method.getMethod("void skipValue()");
+    public static final Method JSON_READER_NEXT_INT = Method.getMethod("int nextInt()");
+    public static final Method JSON_READER_NEXT_LONG = Method.getMethod("long nextLong()");
+    public static final Method JSON_READER_NEXT_DOUBLE = Method.getMethod("double nextDouble()");
+
     private AsmConstants() {
     }
 
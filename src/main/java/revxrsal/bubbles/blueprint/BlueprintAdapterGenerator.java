@@ -0,0 +1,389 @@
+/*
+ * This file is part of Bubbles, licensed under the MIT License.
+ *
+ *  Copyright (c) Revxrsal <reflxction.github@gmail.com>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+package revxrsal.bubbles.blueprint;
+
+import com.google.gson.stream.JsonWriter;
+import org.jetbrains.annotations.NotNull;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.commons.GeneratorAdapter;
+import org.objectweb.asm.commons.Method;
+import org.objectweb.asm.commons.TableSwitchGenerator;
+import revxrsal.bubbles.loader.Definer;
+
+import java.util.*;
+
+import static org.objectweb.asm.Opcodes.ACC_PUBLIC;
+import static revxrsal.bubbles.blueprint.AsmConstants.*;
+
+/**
+ * Generates a {@link GeneratedTypeAdapter} for a blueprint implementation.
+ * <p>
+ * The generated adapter matches keys with a hardcoded switch, and reads
+ * and writes the implementation fields directly. Primitive properties are
+ * read and written without boxing.
+ * <p>
+ * Immutable implementations are read into locals that start with the
+ * default values, and are constructed through their all-args constructor
+ * once the object is fully read.
+ * <p>
+ * Lazy properties are read into a {@link LazyBlueprint}, and are written
+ * through their getter so that pending content is deserialized first.
+ */
+final class BlueprintAdapterGenerator {
+
+    /**
+     * Whether {@link JsonWriter#value(float)} is available, which was only
+     * added in Gson 2.9.1. Older versions get floats boxed and written through
+     * {@code value(Number)} instead, as widening them to doubles would write
+     * {@code 0.1f} as {@code 0.10000000149011612}.
+     */
+    private static final boolean WRITER_HAS_FLOAT = hasFloatWriter();
+
+    private final @NotNull BlueprintClass bp;
+    private final @NotNull Type adapterType;
+    private final @NotNull List<BlueprintProperty> properties;
+    private final @NotNull ClassWriter writer;
+
+    public BlueprintAdapterGenerator(@NotNull BlueprintClass bp) {
+        this.bp = bp;
+        this.adapterType = Type.getObjectType(bp.implType().getInternalName() + "Adapter");
+        this.properties = new ArrayList<>(bp.properties().values());
+        this.writer = new ClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS);
+        writer.visit(
+                Opcodes.V1_8,
+                ACC_PUBLIC,
+                adapterType.getInternalName(),
+                null,
+                GENERATED_ADAPTER.getInternalName(),
+                null
+        );
+        generateConstructor();
+        generateWrite();
+        generateRead();
+        writer.visitEnd();
+    }
+
+    private void generateConstructor() {
+        GeneratorAdapter adapter = new GeneratorAdapter(ACC_PUBLIC, ADAPTER_CONSTRUCTOR, null, null, writer);
+        adapter.loadThis();
+        adapter.loadArg(0);
+        adapter.invokeConstructor(GENERATED_ADAPTER, ADAPTER_CONSTRUCTOR);
+        adapter.returnValue();
+        adapter.endMethod();
+    }
+
+    private void generateWrite() {
+        GeneratorAdapter adapter = new GeneratorAdapter(ACC_PUBLIC, ADAPTER_WRITE, null, new Type[]{IO_EXCEPTION}, writer);
+        Label notNull = adapter.newLabel();
+        adapter.loadArg(1);
+        adapter.ifNonNull(notNull);
+        adapter.loadArg(0);
+        adapter.invokeVirtual(JSON_WRITER, JSON_WRITER_NULL_VALUE);
+        adapter.pop();
+        adapter.returnValue();
+        adapter.mark(notNull);
+
+        int impl = adapter.newLocal(bp.implType());
+        adapter.loadArg(1);
+        adapter.checkCast(bp.implType());
+        adapter.storeLocal(impl);
+
+        adapter.loadArg(0);
+        adapter.invokeVirtual(JSON_WRITER, JSON_WRITER_BEGIN_OBJECT);
+        adapter.pop();
+        for (int i = 0; i < properties.size(); i++) {
+            BlueprintProperty property = properties.get(i);
+            adapter.loadArg(0);
+            adapter.push(property.key());
+            adapter.invokeVirtual(JSON_WRITER, JSON_WRITER_NAME);
+            adapter.pop();
+            Type type = property.type();
+            if (isPrimitive(type)) {
+                adapter.loadArg(0);
+                adapter.loadLocal(impl);
+                adapter.getField(bp.implType(), property.fieldName(), type);
+                adapter.invokeVirtual(JSON_WRITER, writeMethodOf(adapter, type));
+                adapter.pop();
+            } else {
+                loadPropertyAdapter(adapter, i);
+                adapter.loadArg(0);
+                adapter.loadLocal(impl);
+                if (bp.isLazy(property))
+                    adapter.invokeVirtual(bp.implType(), property.asmGetter());
+                else
+                    adapter.getField(bp.implType(), property.fieldName(), type);
+                adapter.invokeVirtual(TYPE_ADAPTER, TYPE_ADAPTER_WRITE);
+            }
+        }
+        adapter.loadArg(0);
+        adapter.invokeVirtual(JSON_WRITER, JSON_WRITER_END_OBJECT);
+        adapter.pop();
+        adapter.returnValue();
+        adapter.endMethod();
+    }
+
+    private void generateRead() {
+        GeneratorAdapter adapter = new GeneratorAdapter(ACC_PUBLIC, ADAPTER_READ, null, new Type[]{IO_EXCEPTION}, writer);
+        Label notNull = adapter.newLabel();
+        adapter.loadArg(0);
+        adapter.invokeVirtual(JSON_READER, JSON_READER_PEEK);
+        adapter.getStatic(JSON_TOKEN, "NULL", JSON_TOKEN);
+        adapter.ifCmp(JSON_TOKEN, GeneratorAdapter.NE, notNull);
+        adapter.loadArg(0);
+        adapter.invokeVirtual(JSON_READER, JSON_READER_NEXT_NULL);
+        adapter.visitInsn(Opcodes.ACONST_NULL);
+        adapter.returnValue();
+        adapter.mark(notNull);
+
+        boolean immutable = bp.isImmutable();
+        int impl = adapter.newLocal(bp.implType());
+        adapter.newInstance(bp.implType());
+        adapter.dup();
+        adapter.invokeConstructor(bp.implType(), NO_ARG_CONSTRUCTOR);
+        adapter.storeLocal(impl);
+
+        int[] values = new int[properties.size()];
+        if (immutable) {
+            for (int i = 0; i < properties.size(); i++) {
+                BlueprintProperty property = properties.get(i);
+                values[i] = adapter.newLocal(property.type());
+                adapter.loadLocal(impl);
+                adapter.getField(bp.implType(), property.fieldName(), property.type());
+                adapter.storeLocal(values[i]);
+            }
+        }
+
+        adapter.loadArg(0);
+        adapter.invokeVirtual(JSON_READER, JSON_READER_BEGIN_OBJECT);
+
+        Label loop = adapter.mark();
+        Label end = adapter.newLabel();
+        Label skip = adapter.newLabel();
+        adapter.loadArg(0);
+        adapter.invokeVirtual(JSON_READER, JSON_READER_HAS_NEXT);
+        adapter.ifZCmp(GeneratorAdapter.EQ, end);
+
+        int name = adapter.newLocal(STRING);
+        adapter.loadArg(0);
+        adapter.invokeVirtual(JSON_READER, JSON_READER_NEXT_NAME);
+        adapter.storeLocal(name);
+
+        Label[] propertyLabels = new Label[properties.size()];
+        Map<Integer, List<Integer>> byHash = new TreeMap<>();
+        for (int i = 0; i < properties.size(); i++) {
+            propertyLabels[i] = adapter.newLabel();
+            byHash.computeIfAbsent(properties.get(i).key().hashCode(), k -> new ArrayList<>()).add(i);
+        }
+        int[] hashes = byHash.keySet().stream().mapToInt(Integer::intValue).toArray();
+
+        if (hashes.length == 0) {
+            adapter.goTo(skip);
+        } else {
+            generateKeySwitch(adapter, name, hashes, byHash, propertyLabels, skip);
+        }
+
+        for (int i = 0; i < properties.size(); i++) {
+            BlueprintProperty property = properties.get(i);
+            Type type = property.type();
+            adapter.mark(propertyLabels[i]);
+            if (isPrimitive(type)) {
+                // nulls leave the default value of primitives untouched
+                Label hasValue = adapter.newLabel();
+                adapter.loadArg(0);
+                adapter.invokeVirtual(JSON_READER, JSON_READER_PEEK);
+                adapter.getStatic(JSON_TOKEN, "NULL", JSON_TOKEN);
+                adapter.ifCmp(JSON_TOKEN, GeneratorAdapter.NE, hasValue);
+                adapter.loadArg(0);
+                adapter.invokeVirtual(JSON_READER, JSON_READER_NEXT_NULL);
+                adapter.goTo(loop);
+                adapter.mark(hasValue);
+
+                if (!immutable)
+                    adapter.loadLocal(impl);
+                adapter.loadArg(0);
+                readPrimitive(adapter, type);
+            } else if (bp.isLazy(property)) {
+                adapter.loadLocal(impl);
+                adapter.newInstance(LAZY_BLUEPRINT);
+                adapter.dup();
+                adapter.loadArg(0);
+                loadPropertyAdapter(adapter, i);
+                adapter.invokeConstructor(LAZY_BLUEPRINT, LAZY_CONSTRUCTOR);
+            } else {
+                if (!immutable)
+                    adapter.loadLocal(impl);
+                loadPropertyAdapter(adapter, i);
+                adapter.loadArg(0);
+                adapter.invokeVirtual(TYPE_ADAPTER, TYPE_ADAPTER_READ);
+                adapter.checkCast(type);
+            }
+            if (bp.isLazy(property))
+                adapter.putField(bp.implType(), BlueprintClass.lazyFieldName(property), LAZY_BLUEPRINT);
+            else if (immutable)
+                adapter.storeLocal(values[i]);
+            else
+                adapter.putField(bp.implType(), property.fieldName(), type);
+            adapter.goTo(loop);
+        }
+
+        adapter.mark(skip);
+        adapter.loadArg(0);
+        adapter.invokeVirtual(JSON_READER, JSON_READER_SKIP_VALUE);
+        adapter.goTo(loop);
+
+        adapter.mark(end);
+        adapter.loadArg(0);
+        adapter.invokeVirtual(JSON_READER, JSON_READER_END_OBJECT);
+        if (immutable) {
+            List<BlueprintProperty> order = bp.constructorOrder();
+            adapter.newInstance(bp.implType());
+            adapter.dup();
+            for (BlueprintProperty property : order)
+                adapter.loadLocal(values[properties.indexOf(property)]);
+            adapter.invokeConstructor(bp.implType(), BlueprintGenerator.allArgsConstructor(order));
+        } else {
+            adapter.loadLocal(impl);
+        }
+        adapter.returnValue();
+        adapter.endMethod();
+    }
+
+    private void generateKeySwitch(
+            @NotNull GeneratorAdapter adapter,
+            int name,
+            int[] hashes,
+            @NotNull Map<Integer, List<Integer>> byHash,
+            @NotNull Label[] propertyLabels,
+            @NotNull Label skip
+    ) {
+        adapter.loadLocal(name);
+        adapter.invokeVirtual(STRING, HASH_CODE);
+        adapter.tableSwitch(hashes, new TableSwitchGenerator() {
+            @Override
+            public void generateCase(int key, Label caseEnd) {
+                for (int index : byHash.get(key)) {
+                    adapter.loadLocal(name);
+                    adapter.push(properties.get(index).key());
+                    adapter.invokeVirtual(STRING, EQUALS);
+                    adapter.ifZCmp(GeneratorAdapter.NE, propertyLabels[index]);
+                }
+                adapter.goTo(skip);
+            }
+
+            @Override
+            public void generateDefault() {
+                adapter.goTo(skip);
+            }
+        }, false);
+    }
+
+    private void loadPropertyAdapter(@NotNull GeneratorAdapter adapter, int index) {
+        adapter.loadThis();
+        adapter.getField(GENERATED_ADAPTER, "adapters", TYPE_ADAPTER_ARRAY);
+        adapter.push(index);
+        adapter.arrayLoad(TYPE_ADAPTER);
+    }
+
+    private static Method writeMethodOf(@NotNull GeneratorAdapter adapter, @NotNull Type type) {
+        switch (type.getSort()) {
+            case Type.BOOLEAN:
+                return JSON_WRITER_BOOLEAN;
+            case Type.BYTE:
+            case Type.SHORT:
+            case Type.INT:
+                adapter.cast(type, Type.LONG_TYPE);
+                return JSON_WRITER_LONG;
+            case Type.LONG:
+                return JSON_WRITER_LONG;
+            case Type.FLOAT:
+                if (WRITER_HAS_FLOAT)
+                    return JSON_WRITER_FLOAT;
+                adapter.valueOf(type);
+                return JSON_WRITER_NUMBER;
+            case Type.DOUBLE:
+                return JSON_WRITER_DOUBLE;
+            case Type.CHAR:
+                adapter.invokeStatic(STRING, STRING_VALUE_OF_CHAR);
+                return JSON_WRITER_STRING;
+            default:
+                throw new IllegalArgumentException("Not a primitive type: " + type);
+        }
+    }
+
+    private static void readPrimitive(@NotNull GeneratorAdapter adapter, @NotNull Type type) {
+        switch (type.getSort()) {
+            case Type.BOOLEAN:
+                adapter.invokeStatic(GENERATED_ADAPTER, ADAPTER_READ_BOOLEAN);
+                break;
+            case Type.BYTE:
+                adapter.invokeStatic(GENERATED_ADAPTER, ADAPTER_READ_BYTE);
+                break;
+            case Type.SHORT:
+                adapter.invokeStatic(GENERATED_ADAPTER, ADAPTER_READ_SHORT);
+                break;
+            case Type.INT:
+                adapter.invokeVirtual(JSON_READER, JSON_READER_NEXT_INT);
+                break;
+            case Type.LONG:
+                adapter.invokeVirtual(JSON_READER, JSON_READER_NEXT_LONG);
+                break;
+            case Type.FLOAT:
+                adapter.invokeVirtual(JSON_READER, JSON_READER_NEXT_DOUBLE);
+                adapter.cast(Type.DOUBLE_TYPE, Type.FLOAT_TYPE);
+                break;
+            case Type.DOUBLE:
+                adapter.invokeVirtual(JSON_READER, JSON_READER_NEXT_DOUBLE);
+                break;
+            case Type.CHAR:
+                adapter.invokeStatic(GENERATED_ADAPTER, ADAPTER_READ_CHAR);
+                break;
+            default:
+                throw new IllegalArgumentException("Not a primitive type: " + type);
+        }
+    }
+
+    private static boolean hasFloatWriter() {
+        try {
+            JsonWriter.class.getMethod("value", float.class);
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    static boolean isPrimitive(@NotNull Type type) {
+        return type.getSort() != Type.OBJECT && type.getSort() != Type.ARRAY;
+    }
+
+    public @NotNull Class<?> define() {
+        return Definer.defineClass(
+                getClass().getClassLoader(),
+                adapterType.getClassName(),
+                writer.toByteArray()
+        );
+    }
+}
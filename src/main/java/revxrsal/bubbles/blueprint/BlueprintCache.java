@@ -0,0 +1,240 @@
+/*
+ * This file is part of Bubbles, licensed under the MIT License.
+ *
+ *  Copyright (c) Revxrsal <reflxction.github@gmail.com>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+package revxrsal.bubbles.blueprint;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.lang.reflect.Method;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * An on-disk cache of generated blueprint classes.
+ * <p>
+ * Entries are keyed by a hash of the bytecode of the blueprint interface and
+ * all of its super-interfaces (which includes their annotations), whether the
+ * types of their properties are blueprints, as well as the bytecode of the
+ * generators. Any change to these results in a different key, so stale entries
+ * are never used.
+ * <p>
+ * The cache is best-effort: any failure to read or write it falls back to
+ * generating the class as usual.
+ */
+final class BlueprintCache {
+
+    private static final int FORMAT_VERSION = 1;
+
+    /**
+     * The classes whose bytecode affects the generated classes
+     */
+    private static final Class<?>[] GENERATORS = {
+            BlueprintGenerator.class,
+            BlueprintProperty.class,
+            BlueprintClass.class,
+            AsmConstants.class
+    };
+
+    /**
+     * The hash of the bytecode of the {@link #GENERATORS}, or {@code null}
+     * if it is not available
+     */
+    private static final byte @Nullable [] GENERATORS_HASH = hashGenerators();
+
+    private final @NotNull Path directory;
+
+    BlueprintCache(@NotNull Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * A cached class
+     */
+    static final class Entry {
+
+        /**
+         * Names of the blueprint interfaces that must be loaded before
+         * the class can be used
+         */
+        final @NotNull List<String> dependencies;
+        final byte[] bytecode;
+
+        Entry(@NotNull List<String> dependencies, byte[] bytecode) {
+            this.dependencies = dependencies;
+            this.bytecode = bytecode;
+        }
+    }
+
+    /**
+     * Returns the file that caches the class generated for the given interface
+     *
+     * @param interfaceType The blueprint interface
+     * @param kind          The kind of generated class, such as {@code "Impl"}
+     * @return The cache file, or {@code null} if the interface cannot be cached
+     */
+    public @Nullable Path fileOf(@NotNull Class<?> interfaceType, @NotNull String kind) {
+        String hash = hashOf(interfaceType);
+        if (hash == null)
+            return null;
+        return directory.resolve(interfaceType.getName() + kind + "-" + hash + ".bin");
+    }
+
+    /**
+     * Reads the cached class in the given file
+     *
+     * @param file The cache file
+     * @return The cached class, or {@code null} if it is not cached
+     */
+    public @Nullable Entry load(@NotNull Path file) {
+        if (!Files.isRegularFile(file))
+            return null;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != FORMAT_VERSION)
+                return null;
+            int dependencyCount = in.readInt();
+            List<String> dependencies = new ArrayList<>(dependencyCount);
+            for (int i = 0; i < dependencyCount; i++)
+                dependencies.add(in.readUTF());
+            byte[] bytecode = new byte[in.readInt()];
+            in.readFully(bytecode);
+            return new Entry(dependencies, bytecode);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Stores the given class in the given file
+     *
+     * @param file  The cache file
+     * @param entry The class to cache
+     */
+    public void store(@NotNull Path file, @NotNull Entry entry) {
+        try {
+            Files.createDirectories(directory);
+            Path temp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(FORMAT_VERSION);
+                out.writeInt(entry.dependencies.size());
+                for (String dependency : entry.dependencies)
+                    out.writeUTF(dependency);
+                out.writeInt(entry.bytecode.length);
+                out.write(entry.bytecode);
+            }
+            try {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException ignored) {
+        }
+    }
+
+    /**
+     * Deletes the cached class in the given file, after it failed to load
+     *
+     * @param file The cache file
+     */
+    public void discard(@NotNull Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ignored) {
+        }
+    }
+
+    private static byte @Nullable [] hashGenerators() {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (Class<?> generator : GENERATORS) {
+                if (!update(digest, generator))
+                    return null;
+            }
+            return digest.digest();
+        } catch (NoSuchAlgorithmException | IOException e) {
+            return null;
+        }
+    }
+
+    private static @Nullable String hashOf(@NotNull Class<?> interfaceType) {
+        if (GENERATORS_HASH == null)
+            return null;
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(GENERATORS_HASH);
+            Set<Class<?>> visited = new HashSet<>();
+            Deque<Class<?>> queue = new ArrayDeque<>();
+            queue.add(interfaceType);
+            while (!queue.isEmpty()) {
+                Class<?> type = queue.poll();
+                if (!visited.add(type))
+                    continue;
+                if (!update(digest, type))
+                    return null;
+                updatePropertyTypes(digest, type);
+                Collections.addAll(queue, type.getInterfaces());
+            }
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest.digest())
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            return hex.toString();
+        } catch (NoSuchAlgorithmException | IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Adds whether the property types of the given interface are blueprints,
+     * as that changes the generated class without changing its bytecode
+     */
+    private static void updatePropertyTypes(@NotNull MessageDigest digest, @NotNull Class<?> type) throws IOException {
+        // declared methods are in no particular order
+        Set<String> types = new TreeSet<>();
+        for (Method method : type.getDeclaredMethods()) {
+            Class<?> propertyType = method.getReturnType();
+            if (method.getParameterCount() == 0 && !propertyType.isPrimitive())
+                types.add(propertyType.getName() + (Blueprints.isBlueprint(propertyType) ? "+" : "-"));
+        }
+        for (String propertyType : types)
+            digest.update(propertyType.getBytes("UTF-8"));
+    }
+
+    private static boolean update(@NotNull MessageDigest digest, @NotNull Class<?> type) throws IOException {
+        ClassLoader loader = type.getClassLoader() == null ? ClassLoader.getSystemClassLoader() : type.getClassLoader();
+        try (InputStream in = loader.getResourceAsStream(type.getName().replace('.', '/') + ".class")) {
+            if (in == null)
+                return false;
+            digest.update(type.getName().getBytes("UTF-8"));
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1)
+                digest.update(buffer, 0, read);
+            return true;
+        }
+    }
+}
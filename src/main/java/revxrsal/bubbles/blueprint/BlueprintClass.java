@@ -6,6 +6,7 @@ import org.jetbrains.annotations.Nullable;
 import org.jetbrains.annotations.Unmodifiable;
 import org.objectweb.asm.Type;
 import revxrsal.bubbles.annotation.Blueprint;
+import revxrsal.bubbles.annotation.PrecompiledBlueprint;
 
 import java.lang.reflect.Constructor;
 import java.util.*;
@@ -16,28 +17,50 @@ public final class BlueprintClass {
 
     public static final String ARRAY_INDEX = "<arr>";
 
+    /**
+     * Types whose values cannot change once created, besides primitives
+     * and enums
+     */
+    private static final Set<Class<?>> VALUE_TYPES = new HashSet<>(Arrays.asList(
+            String.class, Boolean.class, Character.class, Byte.class, Short.class,
+            Integer.class, Long.class, Float.class, Double.class
+    ));
+
     private final @NotNull String simpleName;
     private final @NotNull Type blueprintType;
     private final @NotNull Type implType;
-    private final @Unmodifiable Map<String, BlueprintProperty> properties;
-    private @Nullable Map<String, String> comments;
+    private final @NotNull Class<?> type;
+    private volatile @Unmodifiable Map<String, BlueprintProperty> properties;
+    private volatile @Nullable Map<String, String> comments;
+    private volatile @Nullable CommentTree commentTree;
     private Class<?> cl;
+    private volatile Class<?> adapterClass;
 
     BlueprintClass(
             @NotNull String simpleName,
             @NotNull Type blueprintType,
             @NotNull Type implType,
-            @NotNull Map<String, BlueprintProperty> properties
+            @NotNull Class<?> type
     ) {
         this.simpleName = simpleName;
         this.blueprintType = blueprintType;
         this.implType = implType;
-        this.properties = properties;
+        this.type = type;
     }
 
     private @NotNull Map<String, String> computeComments() {
         Map<String, String> comments = new HashMap<>();
-        computeCommentsRecursively(comments, properties.values(), "", 0);
+        PrecompiledBlueprint precompiled = implClass().getAnnotation(PrecompiledBlueprint.class);
+        if (precompiled != null) {
+            String[] pairs = precompiled.comments();
+            for (int i = 0; i + 1 < pairs.length; i += 2) {
+                // comments are stored with '\n' separators, and always start with a new line
+                String comment = pairs[i + 1];
+                comments.put(pairs[i], '\n' + comment.substring(1).replace("\n", System.lineSeparator()));
+            }
+            return comments;
+        }
+        computeCommentsRecursively(comments, properties().values(), "", 0);
         return comments;
     }
 
@@ -111,10 +134,9 @@ public final class BlueprintClass {
             throw new IllegalArgumentException("Class is not an interface: " + type.getName());
         if (!type.isAnnotationPresent(Blueprint.class))
             throw new IllegalArgumentException("Interface does not have @Blueprint on it!");
-        Map<String, BlueprintProperty> properties = propertiesOf(type);
         Type blueprintClass = Type.getType(type);
         Type implType = Type.getType("L" + (type.getName() + "Impl").replace('.', '/') + ";");
-        return new BlueprintClass(type.getSimpleName(), blueprintClass, implType, properties);
+        return new BlueprintClass(type.getSimpleName(), blueprintClass, implType, type);
     }
 
     public @NotNull Type blueprintType() {
@@ -137,16 +159,131 @@ public final class BlueprintClass {
         return cl;
     }
 
+    /**
+     * Returns the generated {@link GeneratedTypeAdapter} class of this blueprint,
+     * generating it on first access.
+     *
+     * @return The adapter class
+     */
+    @NotNull Class<?> adapterClass() {
+        Class<?> adapterClass = this.adapterClass;
+        if (adapterClass != null)
+            return adapterClass;
+        synchronized (this) {
+            if (this.adapterClass == null)
+                this.adapterClass = new BlueprintAdapterGenerator(this).define();
+            return this.adapterClass;
+        }
+    }
+
     public @NotNull Map<String, String> comments() {
+        Map<String, String> comments = this.comments;
         if (comments == null)
-            comments = computeComments();
+            this.comments = comments = computeComments();
         return comments;
     }
 
+    /**
+     * Returns the {@link #comments()} of this blueprint, compiled into
+     * a tree. This is compiled once, on first access.
+     *
+     * @return The comment tree
+     */
+    public @NotNull CommentTree commentTree() {
+        CommentTree commentTree = this.commentTree;
+        if (commentTree == null)
+            this.commentTree = commentTree = CommentTree.compile(comments());
+        return commentTree;
+    }
+
+    /**
+     * Returns the properties of this blueprint. These are read lazily, as
+     * blueprints that are precompiled or loaded from the bytecode cache
+     * do not need them to be defined.
+     *
+     * @return The blueprint properties
+     */
     public @NotNull @Unmodifiable Map<String, BlueprintProperty> properties() {
+        Map<String, BlueprintProperty> properties = this.properties;
+        if (properties == null)
+            this.properties = properties = propertiesOf(type);
         return properties;
     }
 
+    /**
+     * Tests whether the implementation of this blueprint is immutable
+     *
+     * @return true if it's immutable
+     * @see Blueprint#immutable()
+     */
+    public boolean isImmutable() {
+        return type.getAnnotation(Blueprint.class).immutable();
+    }
+
+    /**
+     * Tests whether the implementation caches its hash code. This is only
+     * the case for immutable blueprints whose properties are all values,
+     * as collections, arrays and other objects returned by the getters may
+     * still be changed, which would make the cached hash code stale.
+     *
+     * @return true if the hash code is cached
+     */
+    boolean cachesHashCode() {
+        return isImmutable() && hasValueProperties(type, new HashSet<>());
+    }
+
+    private static boolean hasValueProperties(@NotNull Class<?> type, @NotNull Set<Class<?>> visited) {
+        if (!visited.add(type))
+            return true;
+        for (BlueprintProperty property : propertiesOf(type).values()) {
+            Class<?> propClass = property.propClass();
+            if (propClass.isPrimitive() || propClass.isEnum() || VALUE_TYPES.contains(propClass))
+                continue;
+            if (Blueprints.isBlueprint(propClass)
+                    && propClass.getAnnotation(Blueprint.class).immutable()
+                    && hasValueProperties(propClass, visited))
+                continue;
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Tests whether the given property of this blueprint is deserialized
+     * lazily. These are nested blueprints of blueprints that are lazy.
+     *
+     * @param property The property
+     * @return true if it's lazy
+     * @see Blueprint#lazy()
+     */
+    public boolean isLazy(@NotNull BlueprintProperty property) {
+        return type.getAnnotation(Blueprint.class).lazy() && Blueprints.isBlueprint(property.propClass());
+    }
+
+    /**
+     * Returns the name of the field that holds the pending content of
+     * a lazy property
+     *
+     * @param property The property
+     * @return The field name
+     */
+    static @NotNull String lazyFieldName(@NotNull BlueprintProperty property) {
+        return property.fieldName() + "$lazy";
+    }
+
+    /**
+     * Returns the properties in the order of the parameters of the all-args
+     * constructor of immutable implementations. This is sorted by key, so that
+     * it does not depend on the order methods are returned by reflection.
+     *
+     * @return The properties in constructor order
+     */
+    @NotNull List<BlueprintProperty> constructorOrder() {
+        List<BlueprintProperty> order = new ArrayList<>(properties().values());
+        order.sort(Comparator.comparing(BlueprintProperty::key));
+        return order;
+    }
+
     /**
      * Constructs the default instance of this class
      *
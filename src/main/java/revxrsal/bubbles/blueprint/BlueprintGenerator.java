@@ -28,6 +28,7 @@ import org.jetbrains.annotations.NotNull;
 import org.objectweb.asm.*;
 import org.objectweb.asm.commons.GeneratorAdapter;
 import org.objectweb.asm.commons.Method;
+import revxrsal.bubbles.collection.PrimitiveCollections;
 import revxrsal.bubbles.loader.Definer;
 
 import java.io.File;
@@ -35,17 +36,34 @@ import java.nio.file.Files;
 import java.nio.file.StandardOpenOption;
 import java.util.*;
 
+import static org.objectweb.asm.Opcodes.ACC_FINAL;
+import static org.objectweb.asm.Opcodes.ACC_PRIVATE;
 import static org.objectweb.asm.Opcodes.ACC_PUBLIC;
+import static org.objectweb.asm.Opcodes.ACC_TRANSIENT;
+import static org.objectweb.asm.Opcodes.ACC_VOLATILE;
 import static revxrsal.bubbles.blueprint.AsmConstants.*;
 
 final class BlueprintGenerator {
 
+    /**
+     * The length assumed for each value when presizing the builder of
+     * {@code toString()}
+     */
+    private static final int EXPECTED_VALUE_LENGTH = 8;
+
     private final @NotNull BlueprintClass bp;
     private final @NotNull ClassWriter writer;
     private final @NotNull GeneratorAdapter constructor;
+    private final boolean immutable;
+
+    /**
+     * The blueprints whose implementations are referenced by the generated class
+     */
+    private final @NotNull List<String> dependencies = new ArrayList<>();
 
     public BlueprintGenerator(@NotNull BlueprintClass bp) {
         this.bp = bp;
+        this.immutable = bp.isImmutable();
         this.writer = new ClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS);
         writer.visit(
                 Opcodes.V1_8,
@@ -53,7 +71,7 @@ final class BlueprintGenerator {
                 bp.implType().getInternalName(),
                 null,
                 OBJECT_CLASS.getInternalName(),
-                new String[]{bp.blueprintType().getInternalName()}
+                new String[]{bp.blueprintType().getInternalName(), GENERATED_BLUEPRINT.getInternalName()}
         );
         constructor = generateConstructor();
 
@@ -64,6 +82,17 @@ final class BlueprintGenerator {
         constructor.returnValue();
         constructor.endMethod();
         generateToString();
+        generateEquals();
+        generateHashCode(bp.cachesHashCode());
+        generateDiff();
+
+        if (immutable) {
+            generateAllArgsConstructor();
+            for (BlueprintProperty property : bp.properties().values()) {
+                if (property.wither() != null)
+                    generateWither(property);
+            }
+        }
 
         writer.visitEnd();
     }
@@ -80,7 +109,7 @@ final class BlueprintGenerator {
     public void generateProperty(@NotNull BlueprintProperty property) {
         // defines the field
         FieldVisitor fv = writer.visitField(
-                ACC_PUBLIC,
+                immutable ? ACC_PUBLIC | ACC_FINAL : ACC_PUBLIC,
                 property.fieldName(),
                 property.type().getDescriptor(),
                 null,
@@ -94,6 +123,17 @@ final class BlueprintGenerator {
             av.visitEnd();
         }
 
+        // defines the field of the pending content of lazy properties
+        if (bp.isLazy(property)) {
+            writer.visitField(
+                    ACC_PUBLIC | ACC_TRANSIENT | ACC_VOLATILE,
+                    BlueprintClass.lazyFieldName(property),
+                    LAZY_BLUEPRINT.getDescriptor(),
+                    null,
+                    null
+            ).visitEnd();
+        }
+
         // adds a constructor instruction if the field has a default value
         if (property.hasDefault()) {
             constructor.loadThis();
@@ -103,6 +143,7 @@ final class BlueprintGenerator {
             constructor.putField(bp.implType(), property.fieldName(), property.type());
         } else if (Blueprints.isBlueprint(property.propClass())) {
             BlueprintClass bpc = Blueprints.from(property.propClass());
+            dependencies.add(property.propClass().getName());
             initWithNoArg(bpc.implType(), property);
         } else if (property.propClass() == List.class
                 || property.propClass() == Iterable.class
@@ -113,6 +154,8 @@ final class BlueprintGenerator {
             initWithNoArg(LINKED_HASH_SET, property);
         } else if (property.propClass() == Map.class) {
             initWithNoArg(LINKED_HASH_MAP, property);
+        } else if (PrimitiveCollections.isPrimitiveCollection(property.propClass())) {
+            initWithNoArg(property.type(), property);
         } else if (property.propClass().isArray()) {
             constructor.loadThis();
             constructor.push(0);
@@ -147,6 +190,27 @@ final class BlueprintGenerator {
     private void generateGetter(@NotNull BlueprintProperty property) {
         GeneratorAdapter adapter = new GeneratorAdapter(ACC_PUBLIC, property.asmGetter(), null, null, writer);
 
+        if (bp.isLazy(property)) {
+            // deserializes the pending content on first access. The field is
+            // volatile, so that the value is visible once the content is cleared.
+            String lazyField = BlueprintClass.lazyFieldName(property);
+            Label materialized = adapter.newLabel();
+            int lazy = adapter.newLocal(LAZY_BLUEPRINT);
+            adapter.loadThis();
+            adapter.getField(bp.implType(), lazyField, LAZY_BLUEPRINT);
+            adapter.storeLocal(lazy);
+            adapter.loadLocal(lazy);
+            adapter.ifNull(materialized);
+            adapter.loadThis();
+            adapter.loadLocal(lazy);
+            adapter.invokeVirtual(LAZY_BLUEPRINT, LAZY_MATERIALIZE);
+            adapter.checkCast(property.type());
+            adapter.putField(bp.implType(), property.fieldName(), property.type());
+            adapter.loadThis();
+            adapter.visitInsn(Opcodes.ACONST_NULL);
+            adapter.putField(bp.implType(), lazyField, LAZY_BLUEPRINT);
+            adapter.mark(materialized);
+        }
         adapter.loadThis();
         adapter.getField(bp.implType(), property.fieldName(), property.type());
 
@@ -154,6 +218,18 @@ final class BlueprintGenerator {
         adapter.endMethod();
     }
 
+    /**
+     * Loads the value of the given property, of the instance on top of the
+     * stack. Lazy properties are loaded through their getter, so that they
+     * are deserialized first.
+     */
+    private void loadProperty(@NotNull GeneratorAdapter adapter, @NotNull BlueprintProperty property) {
+        if (bp.isLazy(property))
+            adapter.invokeVirtual(bp.implType(), property.asmGetter());
+        else
+            adapter.getField(bp.implType(), property.fieldName(), property.type());
+    }
+
     private void generateSetter(@NotNull BlueprintProperty property) {
         Objects.requireNonNull(property.asmSetter());
         GeneratorAdapter adapter = new GeneratorAdapter(ACC_PUBLIC, property.asmSetter(), null, null, writer);
@@ -162,37 +238,352 @@ final class BlueprintGenerator {
         adapter.loadThis();
         adapter.loadArg(0);
         adapter.putField(bp.implType(), property.fieldName(), property.type());
+        if (bp.isLazy(property)) {
+            // discards the pending content, so it does not replace the new value
+            adapter.loadThis();
+            adapter.visitInsn(Opcodes.ACONST_NULL);
+            adapter.putField(bp.implType(), BlueprintClass.lazyFieldName(property), LAZY_BLUEPRINT);
+        }
 
         adapter.returnValue();
         adapter.endMethod();
     }
 
-    private void generateToString() {
-        GeneratorAdapter adapter = newMethodGenerator(writer, "toString", "()Ljava/lang/String;");
-        adapter.newInstance(TO_STRING_BUILDER);
+    /**
+     * Generates the constructor of immutable implementations, which takes
+     * all the properties in {@link BlueprintClass#constructorOrder()}
+     */
+    private void generateAllArgsConstructor() {
+        List<BlueprintProperty> order = bp.constructorOrder();
+        GeneratorAdapter adapter = new GeneratorAdapter(ACC_PUBLIC, allArgsConstructor(order), null, null, writer);
+        adapter.loadThis();
+        adapter.invokeConstructor(OBJECT_CLASS, NO_ARG_CONSTRUCTOR);
+        for (int i = 0; i < order.size(); i++) {
+            BlueprintProperty property = order.get(i);
+            adapter.loadThis();
+            adapter.loadArg(i);
+            adapter.putField(bp.implType(), property.fieldName(), property.type());
+        }
+        adapter.returnValue();
+        adapter.endMethod();
+    }
+
+    static @NotNull Method allArgsConstructor(@NotNull List<BlueprintProperty> order) {
+        Type[] parameters = new Type[order.size()];
+        for (int i = 0; i < parameters.length; i++)
+            parameters[i] = order.get(i).type();
+        return new Method("<init>", Type.VOID_TYPE, parameters);
+    }
+
+    private void generateWither(@NotNull BlueprintProperty property) {
+        Objects.requireNonNull(property.asmWither());
+        GeneratorAdapter adapter = new GeneratorAdapter(ACC_PUBLIC, property.asmWither(), null, null, writer);
+        adapter.visitParameter(property.fieldName(), 0);
+
+        List<BlueprintProperty> order = bp.constructorOrder();
+        adapter.newInstance(bp.implType());
         adapter.dup();
-        adapter.push(bp.simpleName());
-        adapter.invokeConstructor(TO_STRING_BUILDER, TO_STRING_BUILDER_CONSTRUCTOR);
-        int localIndex = adapter.newLocal(TO_STRING_BUILDER);
-        adapter.storeLocal(localIndex);
+        for (BlueprintProperty p : order) {
+            if (p == property) {
+                adapter.loadArg(0);
+            } else {
+                adapter.loadThis();
+                adapter.getField(bp.implType(), p.fieldName(), p.type());
+            }
+        }
+        adapter.invokeConstructor(bp.implType(), allArgsConstructor(order));
+        adapter.returnValue();
+        adapter.endMethod();
+    }
+
+    /**
+     * Generates an {@code equals()} that compares the implementation fields
+     * one by one
+     */
+    private void generateEquals() {
+        GeneratorAdapter adapter = new GeneratorAdapter(ACC_PUBLIC, EQUALS, null, null, writer);
+        Label notEqual = adapter.newLabel();
+        Label notSame = adapter.newLabel();
+        adapter.loadThis();
+        adapter.loadArg(0);
+        adapter.ifCmp(OBJECT_CLASS, GeneratorAdapter.NE, notSame);
+        adapter.push(true);
+        adapter.returnValue();
+        adapter.mark(notSame);
+
+        adapter.loadArg(0);
+        adapter.instanceOf(bp.implType());
+        adapter.ifZCmp(GeneratorAdapter.EQ, notEqual);
+        int other = adapter.newLocal(bp.implType());
+        adapter.loadArg(0);
+        adapter.checkCast(bp.implType());
+        adapter.storeLocal(other);
+
+        for (BlueprintProperty property : bp.properties().values())
+            compareField(adapter, property, other, notEqual);
+        adapter.push(true);
+        adapter.returnValue();
+        adapter.mark(notEqual);
+        adapter.push(false);
+        adapter.returnValue();
+        adapter.endMethod();
+    }
+
+    /**
+     * Generates {@link GeneratedBlueprint#diff(Object)}, which compares the
+     * fields the same way {@link #generateEquals()} does, and recurses into
+     * nested blueprints that are not equal.
+     */
+    private void generateDiff() {
+        GeneratorAdapter adapter = new GeneratorAdapter(ACC_PUBLIC, DIFF, null, null, writer);
+        int other = adapter.newLocal(bp.implType());
+        adapter.loadArg(0);
+        adapter.checkCast(bp.implType());
+        adapter.storeLocal(other);
+        int changes = adapter.newLocal(LINKED_HASH_SET);
+        adapter.newInstance(LINKED_HASH_SET);
+        adapter.dup();
+        adapter.invokeConstructor(LINKED_HASH_SET, NO_ARG_CONSTRUCTOR);
+        adapter.storeLocal(changes);
+
         for (BlueprintProperty property : bp.properties().values()) {
-            adapter.loadLocal(localIndex);
+            Label same = adapter.newLabel();
+            Label changed = adapter.newLabel();
+            compareField(adapter, property, other, changed);
+            adapter.goTo(same);
+            adapter.mark(changed);
+            adapter.loadLocal(changes);
             adapter.push(property.key());
+            if (Blueprints.isBlueprint(property.propClass())) {
+                adapter.loadThis();
+                loadProperty(adapter, property);
+                adapter.loadLocal(other);
+                loadProperty(adapter, property);
+                invokeInsn(adapter, Opcodes.INVOKESTATIC, GENERATED_BLUEPRINT, DIFF_NESTED, true);
+            } else {
+                adapter.invokeVirtual(LINKED_HASH_SET, SET_ADD);
+                adapter.pop();
+            }
+            adapter.mark(same);
+        }
+        adapter.loadLocal(changes);
+        adapter.returnValue();
+        adapter.endMethod();
+    }
+
+    /**
+     * Compares the given field of this instance and the instance in the
+     * {@code other} local, and jumps to {@code notEqual} if they differ.
+     * Floating-point fields are compared the way their wrappers compare them,
+     * and arrays are compared by content.
+     */
+    private void compareField(
+            @NotNull GeneratorAdapter adapter,
+            @NotNull BlueprintProperty property,
+            int other,
+            @NotNull Label notEqual
+    ) {
+        Type type = property.type();
+        adapter.loadThis();
+        loadProperty(adapter, property);
+        adapter.loadLocal(other);
+        loadProperty(adapter, property);
+        switch (type.getSort()) {
+            case Type.BOOLEAN:
+            case Type.BYTE:
+            case Type.SHORT:
+            case Type.CHAR:
+            case Type.INT:
+            case Type.LONG:
+                adapter.ifCmp(type, GeneratorAdapter.NE, notEqual);
+                break;
+            case Type.FLOAT:
+            case Type.DOUBLE:
+                adapter.invokeStatic(boxedTypeOf(type), new Method("compare", Type.INT_TYPE, new Type[]{type, type}));
+                adapter.ifZCmp(GeneratorAdapter.NE, notEqual);
+                break;
+            case Type.ARRAY:
+                adapter.invokeStatic(ARRAYS, arraysMethod(type, "equals", "deepEquals", Type.BOOLEAN_TYPE, 2));
+                adapter.ifZCmp(GeneratorAdapter.EQ, notEqual);
+                break;
+            default:
+                adapter.invokeStatic(OBJECTS, OBJECTS_EQUALS);
+                adapter.ifZCmp(GeneratorAdapter.EQ, notEqual);
+        }
+    }
+
+    /**
+     * Generates a {@code hashCode()} consistent with {@link #generateEquals()}.
+     * <p>
+     * When {@code cached} is true, the hash is stored in a transient field
+     * the first time it is computed. Like {@link String#hashCode()}, this is
+     * racy but safe, as every thread computes the same value.
+     *
+     * @param cached Whether to cache the hash code
+     */
+    private void generateHashCode(boolean cached) {
+        GeneratorAdapter adapter = new GeneratorAdapter(ACC_PUBLIC, HASH_CODE, null, null, writer);
+        int hash = adapter.newLocal(Type.INT_TYPE);
+        Label computed = adapter.newLabel();
+        if (cached) {
+            writer.visitField(ACC_PRIVATE | ACC_TRANSIENT, HASH_FIELD, "I", null, null).visitEnd();
             adapter.loadThis();
-            adapter.getField(bp.implType(), property.fieldName(), property.type());
-            adapter.box(property.type());
-            adapter.invokeVirtual(TO_STRING_BUILDER, TO_STRING_APPEND);
+            adapter.getField(bp.implType(), HASH_FIELD, Type.INT_TYPE);
+            adapter.storeLocal(hash);
+            adapter.loadLocal(hash);
+            adapter.ifZCmp(GeneratorAdapter.NE, computed);
+        }
+        adapter.push(1);
+        adapter.storeLocal(hash);
+        for (BlueprintProperty property : bp.properties().values()) {
+            Type type = property.type();
+            adapter.push(31);
+            adapter.loadLocal(hash);
+            adapter.math(GeneratorAdapter.MUL, Type.INT_TYPE);
+            adapter.loadThis();
+            loadProperty(adapter, property);
+            switch (type.getSort()) {
+                case Type.BYTE:
+                case Type.SHORT:
+                case Type.CHAR:
+                case Type.INT:
+                    break;
+                case Type.BOOLEAN:
+                case Type.LONG:
+                case Type.FLOAT:
+                case Type.DOUBLE:
+                    adapter.invokeStatic(boxedTypeOf(type), new Method("hashCode", Type.INT_TYPE, new Type[]{type}));
+                    break;
+                case Type.ARRAY:
+                    adapter.invokeStatic(ARRAYS, arraysMethod(type, "hashCode", "deepHashCode", Type.INT_TYPE, 1));
+                    break;
+                default:
+                    adapter.invokeStatic(OBJECTS, OBJECTS_HASH_CODE);
+            }
+            adapter.math(GeneratorAdapter.ADD, Type.INT_TYPE);
+            adapter.storeLocal(hash);
         }
-        adapter.loadLocal(localIndex);
-        adapter.invokeVirtual(TO_STRING_BUILDER, TO_STRING);
+        if (cached) {
+            adapter.loadThis();
+            adapter.loadLocal(hash);
+            adapter.putField(bp.implType(), HASH_FIELD, Type.INT_TYPE);
+            adapter.mark(computed);
+        }
+        adapter.loadLocal(hash);
         adapter.returnValue();
         adapter.endMethod();
     }
 
+    /**
+     * Returns the {@link Arrays} method that handles the given array type.
+     * Arrays of primitives have their own overloads, and arrays of objects
+     * use the deep variant so that nested arrays are compared by content.
+     */
+    private static @NotNull Method arraysMethod(
+            @NotNull Type arrayType,
+            @NotNull String name,
+            @NotNull String deepName,
+            @NotNull Type returnType,
+            int arity
+    ) {
+        boolean primitive = arrayType.getDimensions() == 1 && arrayType.getElementType().getSort() != Type.OBJECT;
+        Type parameter = primitive ? arrayType : OBJECT_ARRAY;
+        Type[] parameters = new Type[arity];
+        Arrays.fill(parameters, parameter);
+        return new Method(primitive ? name : deepName, returnType, parameters);
+    }
+
+    private static @NotNull Type boxedTypeOf(@NotNull Type type) {
+        switch (type.getSort()) {
+            case Type.BOOLEAN:
+                return BOOLEAN;
+            case Type.LONG:
+                return LONG;
+            case Type.FLOAT:
+                return FLOAT;
+            case Type.DOUBLE:
+                return DOUBLE;
+            default:
+                throw new IllegalArgumentException("Unexpected type: " + type);
+        }
+    }
+
+    /**
+     * Generates a {@code toString()} that appends to a single presized
+     * {@link StringBuilder}. Property names are merged into constant prefixes,
+     * primitives are appended without boxing, and arrays go through the
+     * matching {@link Arrays#toString} overload.
+     */
+    private void generateToString() {
+        GeneratorAdapter adapter = newMethodGenerator(writer, "toString", "()Ljava/lang/String;");
+        Collection<BlueprintProperty> properties = bp.properties().values();
+        String prefix = bp.simpleName() + '(';
+        int capacity = prefix.length() + 1;
+        for (BlueprintProperty property : properties)
+            capacity += property.key().length() + 3 + EXPECTED_VALUE_LENGTH;
+        adapter.newInstance(STRING_BUILDER);
+        adapter.dup();
+        adapter.push(capacity);
+        adapter.invokeConstructor(STRING_BUILDER, STRING_BUILDER_CONSTRUCTOR);
+        for (BlueprintProperty property : properties) {
+            adapter.push(prefix + property.key() + '=');
+            adapter.invokeVirtual(STRING_BUILDER, appendOf(STRING));
+            adapter.loadThis();
+            loadProperty(adapter, property);
+            adapter.invokeVirtual(STRING_BUILDER, appendOf(toStringType(adapter, property.type())));
+            prefix = ", ";
+        }
+        if (properties.isEmpty()) {
+            adapter.push(prefix);
+            adapter.invokeVirtual(STRING_BUILDER, appendOf(STRING));
+        }
+        adapter.push(')');
+        adapter.invokeVirtual(STRING_BUILDER, appendOf(Type.CHAR_TYPE));
+        adapter.invokeVirtual(STRING_BUILDER, TO_STRING);
+        adapter.returnValue();
+        adapter.endMethod();
+    }
+
+    /**
+     * Returns the type that the given field is appended as, converting
+     * arrays to strings on the way
+     */
+    private static @NotNull Type toStringType(@NotNull GeneratorAdapter adapter, @NotNull Type type) {
+        switch (type.getSort()) {
+            case Type.BYTE:
+            case Type.SHORT:
+                return Type.INT_TYPE;
+            case Type.BOOLEAN:
+            case Type.CHAR:
+            case Type.INT:
+            case Type.LONG:
+            case Type.FLOAT:
+            case Type.DOUBLE:
+                return type;
+            case Type.ARRAY:
+                adapter.invokeStatic(ARRAYS, arraysMethod(type, "toString", "toString", STRING, 1));
+                return STRING;
+            default:
+                return type.equals(STRING) ? STRING : OBJECT_CLASS;
+        }
+    }
+
+    private static @NotNull Method appendOf(@NotNull Type type) {
+        return new Method("append", STRING_BUILDER, new Type[]{type});
+    }
+
     private static @NotNull GeneratorAdapter newMethodGenerator(ClassWriter writer, String name, String descriptor, String... throwables) {
         return new GeneratorAdapter(writer.visitMethod(ACC_PUBLIC, name, descriptor, null, throwables), ACC_PUBLIC, name, descriptor);
     }
 
+    public byte[] toByteArray() {
+        return writer.toByteArray();
+    }
+
+    public @NotNull List<String> dependencies() {
+        return dependencies;
+    }
+
     public @NotNull Class<?> define() {
         return Definer.defineClass(
                 getClass().getClassLoader(),
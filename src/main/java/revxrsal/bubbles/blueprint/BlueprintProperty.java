@@ -28,9 +28,15 @@ import lombok.SneakyThrows;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.annotations.Unmodifiable;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.Type;
 import revxrsal.bubbles.annotation.*;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.util.*;
@@ -46,10 +52,12 @@ public final class BlueprintProperty {
     private Class<?> propClass;
     private Method getter;
     private @Nullable Method setter;
+    private @Nullable Method wither;
     private @Unmodifiable List<String> comments = Collections.emptyList();
 
     private org.objectweb.asm.commons.Method asmGetter;
     private @Nullable org.objectweb.asm.commons.Method asmSetter;
+    private @Nullable org.objectweb.asm.commons.Method asmWither;
 
     public @NotNull String key() {
         return key;
@@ -76,6 +84,16 @@ public final class BlueprintProperty {
         return setter;
     }
 
+    /**
+     * Returns the {@code with} method of this property, which returns a copy
+     * of an immutable blueprint with this property changed.
+     *
+     * @return The with method, or {@code null} if there is none
+     */
+    public @Nullable Method wither() {
+        return wither;
+    }
+
     public @NotNull @Unmodifiable List<String> comments() {
         return comments;
     }
@@ -88,6 +106,10 @@ public final class BlueprintProperty {
         return asmSetter;
     }
 
+    public @Nullable org.objectweb.asm.commons.Method asmWither() {
+        return asmWither;
+    }
+
     public @NotNull org.objectweb.asm.commons.Method asmGetter() {
         return asmGetter;
     }
@@ -104,7 +126,7 @@ public final class BlueprintProperty {
             throw new IllegalArgumentException("Interface does not have @Blueprint on it!");
         Map<String, BlueprintProperty> properties = new LinkedHashMap<>();
         Method[] methods = interfaceType.getMethods();
-        sortByAnnotation(methods);
+        sortMethods(interfaceType, methods);
         for (Method method : methods) {
             if (Modifier.isStatic(method.getModifiers()))
                 continue;
@@ -114,31 +136,75 @@ public final class BlueprintProperty {
                 else
                     throw new IllegalArgumentException("Cannot ignore a non-default method! Ignored methods must be default");
             }
-            parse(method, properties);
+            parse(interfaceType, method, properties);
         }
+        boolean immutable = interfaceType.getAnnotation(Blueprint.class).immutable();
+        if (immutable && interfaceType.getAnnotation(Blueprint.class).lazy())
+            throw new IllegalArgumentException("Immutable blueprints cannot be lazy");
         for (BlueprintProperty value : properties.values()) {
             if (value.type == null)
                 throw new IllegalArgumentException("Failed to infer the type of property '" + value.key + "'!");
             if (value.getter == null)
                 throw new IllegalArgumentException("No getter exists for property '" + value.key + "'!");
+            if (immutable && value.setter != null)
+                throw new IllegalArgumentException("Immutable blueprints cannot have setters (property '" + value.key + "'). Use a with method instead.");
+            if (!immutable && value.wither != null)
+                throw new IllegalArgumentException("With methods are only supported in immutable blueprints (property '" + value.key + "')");
         }
         return Collections.unmodifiableMap(properties);
     }
 
-    private static void sortByAnnotation(Method[] methods) {
-        Arrays.sort(methods, (o1, o2) -> {
-            Pos pos1 = o1.getAnnotation(Pos.class);
-            Pos pos2 = o2.getAnnotation(Pos.class);
-            if (pos1 == null && pos2 == null)
-                return 0; // Both methods are unannotated
-            if (pos1 == null)
-                return -1; // o1 is unannotated, so it comes first
-            if (pos2 == null)
-                return 1;  // o2 is unannotated, so it comes first
+    /**
+     * Sorts the methods by their {@link Pos}, where unannotated methods come
+     * first, and then in the order they are declared in. This is the same order
+     * the annotation processor uses, so that both produce the same properties.
+     * <p>
+     * Reflection returns methods in no particular order, so the declaration
+     * order is read from the class files of the interface and its
+     * superinterfaces. Methods whose class file cannot be read come last,
+     * sorted by name.
+     */
+    private static void sortMethods(@NotNull Class<?> interfaceType, Method[] methods) {
+        Map<String, Integer> order = new HashMap<>();
+        declarationOrder(interfaceType, new HashSet<>(), order);
+        Arrays.sort(methods, Comparator.comparingInt(BlueprintProperty::posOf)
+                .thenComparingInt(method -> order.getOrDefault(signatureOf(method), Integer.MAX_VALUE))
+                .thenComparing(Method::getName));
+    }
+
+    private static int posOf(@NotNull Method method) {
+        Pos pos = method.getAnnotation(Pos.class);
+        // unannotated methods come first
+        return pos == null ? Integer.MIN_VALUE : pos.value();
+    }
+
+    /**
+     * Collects the methods of the given interface, then the ones of its
+     * superinterfaces, in the order they appear in their class files
+     */
+    private static void declarationOrder(@NotNull Class<?> type, @NotNull Set<Class<?>> visited, @NotNull Map<String, Integer> order) {
+        if (!visited.add(type))
+            return;
+        ClassLoader loader = type.getClassLoader() == null ? ClassLoader.getSystemClassLoader() : type.getClassLoader();
+        try (InputStream in = loader.getResourceAsStream(type.getName().replace('.', '/') + ".class")) {
+            if (in != null) {
+                new ClassReader(in).accept(new ClassVisitor(Opcodes.ASM9) {
+                    @Override
+                    public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+                        order.putIfAbsent(type.getName() + '.' + name + descriptor, order.size());
+                        return null;
+                    }
+                }, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+            }
+        } catch (IOException ignored) {
+            // these methods are sorted by name instead
+        }
+        for (Class<?> parent : type.getInterfaces())
+            declarationOrder(parent, visited, order);
+    }
 
-            // Both methods have the annotation, compare their values
-            return Integer.compare(pos1.value(), pos2.value());
-        });
+    private static @NotNull String signatureOf(@NotNull Method method) {
+        return method.getDeclaringClass().getName() + '.' + method.getName() + Type.getMethodDescriptor(method);
     }
 
     private void setType(@Nullable Type type) {
@@ -149,10 +215,12 @@ public final class BlueprintProperty {
     }
 
     private static void parse(
+            @NotNull Class<?> interfaceType,
             @NotNull Method method,
             @NotNull Map<String, BlueprintProperty> properties
     ) {
-        String key = keyOf(method);
+        boolean wither = impliesWither(interfaceType, method);
+        String key = keyOf(method, wither);
         BlueprintProperty existing = properties.computeIfAbsent(key, BlueprintProperty::new);
         @Nullable List<String> comments = commentsOf(method);
         if (comments != null) {
@@ -161,7 +229,14 @@ public final class BlueprintProperty {
             else
                 throw new IllegalArgumentException("Inconsistent comments for property '" + key + "'");
         }
-        if (method.getReturnType() == Void.TYPE || impliesSetter(method)) {
+        if (wither) {
+            if (existing.wither != null)
+                throw new IllegalArgumentException("Found 2 with methods for property '" + key + "'!");
+            existing.propClass = method.getParameterTypes()[0];
+            existing.setType(Type.getType(existing.propClass));
+            existing.wither = method;
+            existing.asmWither = org.objectweb.asm.commons.Method.getMethod(method);
+        } else if (method.getReturnType() == Void.TYPE || impliesSetter(method)) {
             if (existing.setter != null)
                 throw new IllegalArgumentException("Found 2 setters for property '" + key + "'!");
             if (method.getReturnType() != Void.TYPE)
@@ -192,11 +267,19 @@ public final class BlueprintProperty {
         return method.getName().startsWith("set");
     }
 
-    private static String keyOf(@NotNull Method method) {
+    private static boolean impliesWither(@NotNull Class<?> interfaceType, @NotNull Method method) {
+        return method.getName().startsWith("with")
+                && method.getParameterCount() == 1
+                && method.getReturnType().isAssignableFrom(interfaceType);
+    }
+
+    private static String keyOf(@NotNull Method method, boolean wither) {
         Key key = method.getAnnotation(Key.class);
-        if (key == null)
-            return lowerFirst(fromName(method.getName()));
-        return key.value();
+        if (key != null)
+            return key.value();
+        if (wither)
+            return lowerFirst(method.getName().substring(4));
+        return lowerFirst(fromName(method.getName()));
     }
 
     private static String fromName(String name) {
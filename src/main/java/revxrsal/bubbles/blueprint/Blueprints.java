@@ -27,17 +27,50 @@ import com.google.gson.Gson;
 import com.google.gson.TypeAdapter;
 import com.google.gson.TypeAdapterFactory;
 import com.google.gson.reflect.TypeToken;
+import lombok.SneakyThrows;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import revxrsal.bubbles.annotation.Blueprint;
+import revxrsal.bubbles.annotation.PrecompiledBlueprint;
+import revxrsal.bubbles.collection.PrimitiveCollections;
+import revxrsal.bubbles.loader.Definer;
 
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
-import java.util.HashMap;
+import java.nio.file.Path;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 
 public final class Blueprints {
 
-    private static final Map<Class<?>, BlueprintClass> IMPLEMENTATIONS = new HashMap<>();
+    private static final Map<Class<?>, BlueprintClass> IMPLEMENTATIONS = new ConcurrentHashMap<>();
+
+    /**
+     * Locks used when generating blueprints, so that each blueprint is generated
+     * at most once, without blocking the generation of unrelated blueprints.
+     */
+    private static final Map<Class<?>, Object> GENERATION_LOCKS = new ConcurrentHashMap<>();
+
+    /**
+     * The on-disk cache of generated classes, if enabled
+     */
+    private static volatile @Nullable BlueprintCache cache;
+
+    /**
+     * Enables caching the bytecode of generated blueprint classes in the given
+     * directory. Subsequent runs define cached classes directly, without
+     * generating them again.
+     * <p>
+     * Cached classes are keyed by the bytecode of their blueprint interface,
+     * so changing a blueprint automatically invalidates its cached classes.
+     *
+     * @param directory The cache directory, or {@code null} to disable caching
+     */
+    public static void setCacheDirectory(@Nullable Path directory) {
+        cache = directory == null ? null : new BlueprintCache(directory);
+    }
 
     /**
      * Generates and loads (if necessary) the blueprint implementation of
@@ -54,13 +87,104 @@ public final class Blueprints {
         BlueprintClass bp = IMPLEMENTATIONS.get(interfaceType);
         if (bp != null)
             return bp;
-        bp = BlueprintClass.from(interfaceType);
-        BlueprintGenerator generator = new BlueprintGenerator(bp);
-        bp.setClass(generator.define());
-        IMPLEMENTATIONS.put(interfaceType, bp);
+        // generating a blueprint may recursively generate other blueprints, so
+        // computeIfAbsent() cannot be used here.
+        synchronized (GENERATION_LOCKS.computeIfAbsent(interfaceType, k -> new Object())) {
+            bp = IMPLEMENTATIONS.get(interfaceType);
+            if (bp != null)
+                return bp;
+            bp = BlueprintClass.from(interfaceType);
+            Class<?> precompiled = findPrecompiled(interfaceType);
+            if (precompiled != null) {
+                bp.setClass(precompiled);
+            } else {
+                BlueprintClass generated = bp;
+                bp.setClass(defineGenerated(interfaceType, "Impl", bp.implType().getClassName(), () -> {
+                    BlueprintGenerator generator = new BlueprintGenerator(generated);
+                    return new BlueprintCache.Entry(generator.dependencies(), generator.toByteArray());
+                }));
+            }
+            IMPLEMENTATIONS.put(interfaceType, bp);
+        }
+        GENERATION_LOCKS.remove(interfaceType);
         return bp;
     }
 
+    /**
+     * Defines a class generated for the given blueprint, reading it from
+     * the cache if possible.
+     *
+     * @param interfaceType The blueprint interface
+     * @param kind          The kind of generated class, such as {@code "Impl"}
+     * @param className     The name of the generated class
+     * @param generator     Generates the class if it is not cached
+     * @return The defined class
+     */
+    @SneakyThrows
+    static @NotNull Class<?> defineGenerated(
+            @NotNull Class<?> interfaceType,
+            @NotNull String kind,
+            @NotNull String className,
+            @NotNull Supplier<BlueprintCache.Entry> generator
+    ) {
+        BlueprintCache cache = Blueprints.cache;
+        Path file = cache == null ? null : cache.fileOf(interfaceType, kind);
+        BlueprintCache.Entry entry = file == null ? null : cache.load(file);
+        if (entry != null) {
+            // the generated class may reference the implementations of other blueprints
+            for (String dependency : entry.dependencies)
+                from(Class.forName(dependency, false, interfaceType.getClassLoader()));
+            try {
+                return Definer.defineClass(Blueprints.class.getClassLoader(), className, entry.bytecode);
+            } catch (LinkageError e) {
+                // corrupted or incompatible cache entry. generate it again
+                cache.discard(file);
+            }
+        }
+        entry = generator.get();
+        if (file != null)
+            cache.store(file, entry);
+        return Definer.defineClass(Blueprints.class.getClassLoader(), className, entry.bytecode);
+    }
+
+    /**
+     * Returns the implementation generated by the annotation processor for the given
+     * blueprint, if any.
+     *
+     * @param interfaceType The blueprint type
+     * @return The precompiled implementation, or {@code null} if there is none
+     */
+    private static @Nullable Class<?> findPrecompiled(@NotNull Class<?> interfaceType) {
+        try {
+            Class<?> impl = Class.forName(interfaceType.getName() + "Impl", false, interfaceType.getClassLoader());
+            if (impl.isAnnotationPresent(PrecompiledBlueprint.class) && interfaceType.isAssignableFrom(impl))
+                return impl;
+        } catch (ClassNotFoundException ignored) {
+        }
+        return null;
+    }
+
+    /**
+     * Returns the keys of the properties that differ between the two given
+     * blueprints. Changes in nested blueprints are reported with their full
+     * path, such as {@code arena.spawn.x}.
+     * <p>
+     * This compares the generated fields directly, and can be used to skip
+     * work when a reloaded section did not change.
+     *
+     * @param blueprint The first blueprint
+     * @param other     The second blueprint
+     * @param <T>       The blueprint type
+     * @return The changed keys, in the order of the properties
+     */
+    public static @NotNull <T> Set<String> diff(@NotNull T blueprint, @NotNull T other) {
+        if (!(blueprint instanceof GeneratedBlueprint))
+            throw new IllegalArgumentException("Not a generated blueprint: " + blueprint.getClass().getName());
+        if (blueprint.getClass() != other.getClass())
+            throw new IllegalArgumentException("Cannot diff " + blueprint.getClass().getName() + " with " + other.getClass().getName());
+        return ((GeneratedBlueprint) blueprint).diff(other);
+    }
+
     /**
      * Tests whether the given class is a blueprint interface or not
      *
@@ -74,7 +198,10 @@ public final class Blueprints {
     /**
      * Returns a {@link TypeAdapterFactory} specialized for parsing
      * blueprint interfaces. You must register this to be able
-     * to use blueprints
+     * to use blueprints.
+     * <p>
+     * This also provides the adapters of the primitive collections
+     * in {@link revxrsal.bubbles.collection}.
      *
      * @return The gson type adapter factory
      */
@@ -90,17 +217,40 @@ public final class Blueprints {
         public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> typeToken) {
             Class<? super T> rawType = typeToken.getRawType();
             if (!isBlueprint(rawType)) {
-                return null;
+                @SuppressWarnings("unchecked")
+                TypeAdapter<T> adapter = (TypeAdapter<T>) PrimitiveCollections.adapterFor(rawType);
+                return adapter;
             }
             BlueprintClass impl = Blueprints.from(rawType);
             Type iType = typeToken.getType();
+            if (rawType.getTypeParameters().length == 0) {
+                @SuppressWarnings("unchecked")
+                TypeAdapter<T> generated = (TypeAdapter<T>) createGenerated(gson, impl);
+                return generated;
+            }
             TypeToken<?> implType;
             if (iType instanceof ParameterizedType) {
                 implType = TypeToken.getParameterized(impl.implClass(), ((ParameterizedType) iType).getActualTypeArguments());
             } else {
                 implType = TypeToken.get(impl.implClass());
             }
-            return (TypeAdapter<T>) gson.getDelegateAdapter(this, implType);
+            @SuppressWarnings("unchecked")
+            TypeAdapter<T> delegate = (TypeAdapter<T>) gson.getDelegateAdapter(this, implType);
+            return delegate;
+        }
+
+        @SneakyThrows
+        private static @NotNull TypeAdapter<?> createGenerated(@NotNull Gson gson, @NotNull BlueprintClass impl) {
+            TypeAdapter<?>[] adapters = new TypeAdapter<?>[impl.properties().size()];
+            int index = 0;
+            for (BlueprintProperty property : impl.properties().values()) {
+                if (!property.propClass().isPrimitive())
+                    adapters[index] = gson.getAdapter(TypeToken.get(property.getter().getGenericReturnType()));
+                index++;
+            }
+            return (TypeAdapter<?>) impl.adapterClass()
+                    .getDeclaredConstructor(TypeAdapter[].class)
+                    .newInstance((Object) adapters);
         }
     }
 
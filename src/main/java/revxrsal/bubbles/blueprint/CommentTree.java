@@ -0,0 +1,161 @@
+/*
+ * This file is part of Bubbles, licensed under the MIT License.
+ *
+ *  Copyright (c) Revxrsal <reflxction.github@gmail.com>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+package revxrsal.bubbles.blueprint;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Comments compiled into a tree that mirrors the structure of the content
+ * they belong to.
+ * <p>
+ * Writers walk this alongside the content, one key at a time, instead of
+ * building the dotted path of every entry and looking it up in a map.
+ * Sections that have no comments have no node, so their content can be
+ * written without any lookups.
+ * <p>
+ * Trees are immutable, and can be shared between threads.
+ */
+public final class CommentTree {
+
+    /**
+     * A tree without any comments
+     */
+    public static final CommentTree EMPTY = new CommentTree(null, Collections.emptyMap());
+
+    private static final Pattern LINE_SEPARATOR = Pattern.compile("\r?\n");
+    private static final String[] NO_LINES = new String[0];
+
+    private final @Nullable String comment;
+    private final String @NotNull [] lines;
+    private final @NotNull Map<String, CommentTree> children;
+    private final @Nullable CommentTree elements;
+
+    private CommentTree(@Nullable String comment, @NotNull Map<String, CommentTree> children) {
+        this.comment = comment;
+        this.lines = comment == null ? NO_LINES : LINE_SEPARATOR.split(comment, -1);
+        this.children = children;
+        this.elements = children.get(BlueprintClass.ARRAY_INDEX);
+    }
+
+    /**
+     * Compiles the given comments into a tree
+     *
+     * @param comments The comments, keyed by their paths. Subkeys are delimited
+     *                 by '.', and array elements have {@link BlueprintClass#ARRAY_INDEX}
+     *                 as their key.
+     * @return The compiled tree
+     */
+    public static @NotNull CommentTree compile(@NotNull Map<String, String> comments) {
+        if (comments.isEmpty())
+            return EMPTY;
+        Builder root = new Builder();
+        for (Map.Entry<String, String> entry : comments.entrySet()) {
+            Builder node = root;
+            if (!entry.getKey().isEmpty()) {
+                for (String key : entry.getKey().split("\\.", -1))
+                    node = node.children.computeIfAbsent(key, k -> new Builder());
+            }
+            node.comment = entry.getValue();
+        }
+        return root.build();
+    }
+
+    /**
+     * Returns the comment of this node
+     *
+     * @return The comment, or {@code null} if there is none
+     */
+    public @Nullable String comment() {
+        return comment;
+    }
+
+    /**
+     * Returns the lines of the comment of this node
+     *
+     * @return The lines. This is empty if there is no comment.
+     */
+    public String @NotNull [] lines() {
+        return lines;
+    }
+
+    /**
+     * Returns the node of the given key
+     *
+     * @param key The key. Keys that contain '.' are resolved one segment
+     *            at a time, the same way their dotted path would be.
+     * @return The node, or {@code null} if nothing under the key is commented
+     */
+    public @Nullable CommentTree child(@NotNull String key) {
+        CommentTree child = children.get(key);
+        if (child != null || key.indexOf('.') < 0)
+            return child;
+        CommentTree node = this;
+        for (String segment : key.split("\\.", -1)) {
+            node = node.children.get(segment);
+            if (node == null)
+                return null;
+        }
+        return node;
+    }
+
+    /**
+     * Returns the node of array elements, which is the node of
+     * {@link BlueprintClass#ARRAY_INDEX}
+     *
+     * @return The node, or {@code null} if nothing in the elements is commented
+     */
+    public @Nullable CommentTree elements() {
+        return elements;
+    }
+
+    /**
+     * Tests whether this tree has no comments at all
+     *
+     * @return true if it's empty
+     */
+    public boolean isEmpty() {
+        return comment == null && children.isEmpty();
+    }
+
+    private static final class Builder {
+
+        private @Nullable String comment;
+        private final Map<String, Builder> children = new HashMap<>();
+
+        private @NotNull CommentTree build() {
+            if (children.isEmpty())
+                return new CommentTree(comment, Collections.emptyMap());
+            Map<String, CommentTree> built = new HashMap<>(children.size() * 4 / 3 + 1);
+            for (Map.Entry<String, Builder> entry : children.entrySet())
+                built.put(entry.getKey(), entry.getValue().build());
+            return new CommentTree(comment, built);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * This file is part of Bubbles, licensed under the MIT License.
+ *
+ *  Copyright (c) Revxrsal <reflxction.github@gmail.com>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+package revxrsal.bubbles.blueprint;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Set;
+
+/**
+ * Implemented by every generated blueprint implementation. Generated
+ * implementations also compare their properties field by field in
+ * {@code equals()} and {@code hashCode()}.
+ *
+ * @see Blueprints#diff(Object, Object)
+ */
+public interface GeneratedBlueprint {
+
+    /**
+     * Returns the keys of the properties that differ between this blueprint
+     * and the given one. Changes in nested blueprints are reported with their
+     * full path, such as {@code arena.spawn.x}.
+     *
+     * @param other The blueprint to compare with. This must be an instance of
+     *              the same implementation
+     * @return The changed keys, in the order of the properties
+     */
+    @NotNull Set<String> diff(@NotNull Object other);
+
+    /**
+     * Adds the changes of a nested blueprint property. This is called by
+     * generated code when the two values are not equal.
+     *
+     * @param changes The changed keys
+     * @param key     The key of the property
+     * @param value   The value of this blueprint
+     * @param other   The value of the other blueprint
+     */
+    static void diffNested(@NotNull Set<String> changes, @NotNull String key, @Nullable Object value, @Nullable Object other) {
+        if (value instanceof GeneratedBlueprint && other != null && value.getClass() == other.getClass()) {
+            for (String nested : ((GeneratedBlueprint) value).diff(other))
+                changes.add(key + '.' + nested);
+        } else {
+            changes.add(key);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * This file is part of Bubbles, licensed under the MIT License.
+ *
+ *  Copyright (c) Revxrsal <reflxction.github@gmail.com>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+package revxrsal.bubbles.blueprint;
+
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+
+/**
+ * The base class of the {@link TypeAdapter TypeAdapters} generated for
+ * blueprints. Generated adapters read and write the implementation fields
+ * directly, and only go through Gson for properties that are not primitives.
+ *
+ * @param <T> The blueprint type
+ */
+public abstract class GeneratedTypeAdapter<T> extends TypeAdapter<T> {
+
+    /**
+     * The adapters of the blueprint properties, in the same order as
+     * {@link BlueprintClass#properties()}. Entries of primitive properties
+     * are {@code null}.
+     */
+    protected final TypeAdapter<?>[] adapters;
+
+    protected GeneratedTypeAdapter(@NotNull TypeAdapter<?>[] adapters) {
+        this.adapters = adapters;
+    }
+
+    /**
+     * Reads a boolean, accepting strings as well, the same way Gson
+     * does for {@code boolean} properties.
+     *
+     * @param in The reader
+     * @return The boolean
+     */
+    protected static boolean readBoolean(@NotNull JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.STRING)
+            return Boolean.parseBoolean(in.nextString());
+        return in.nextBoolean();
+    }
+
+    /**
+     * Reads a byte, rejecting values that do not fit in one, the same
+     * way Gson does for {@code byte} properties.
+     *
+     * @param in The reader
+     * @return The byte
+     */
+    protected static byte readByte(@NotNull JsonReader in) throws IOException {
+        int value = in.nextInt();
+        // unsigned values are allowed as well
+        if (value > 255 || value < Byte.MIN_VALUE)
+            throw new JsonSyntaxException("Lossy conversion from " + value + " to byte; at path " + in.getPath());
+        return (byte) value;
+    }
+
+    /**
+     * Reads a short, rejecting values that do not fit in one, the same
+     * way Gson does for {@code short} properties.
+     *
+     * @param in The reader
+     * @return The short
+     */
+    protected static short readShort(@NotNull JsonReader in) throws IOException {
+        int value = in.nextInt();
+        // unsigned values are allowed as well
+        if (value > 65535 || value < Short.MIN_VALUE)
+            throw new JsonSyntaxException("Lossy conversion from " + value + " to short; at path " + in.getPath());
+        return (short) value;
+    }
+
+    /**
+     * Reads a character, rejecting strings that are not exactly one
+     * character long.
+     *
+     * @param in The reader
+     * @return The character
+     */
+    protected static char readChar(@NotNull JsonReader in) throws IOException {
+        String value = in.nextString();
+        if (value.length() != 1)
+            throw new JsonSyntaxException("Expecting character, got: " + value + "; at path " + in.getPath());
+        return value.charAt(0);
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * This file is part of Bubbles, licensed under the MIT License.
+ *
+ *  Copyright (c) Revxrsal <reflxction.github@gmail.com>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+package revxrsal.bubbles.blueprint;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * The pending content of a lazy nested blueprint. Generated implementations
+ * keep this until the getter of the property is first called.
+ *
+ * @see revxrsal.bubbles.annotation.Blueprint#lazy()
+ */
+public final class LazyBlueprint {
+
+    private final @NotNull JsonElement node;
+    private final @NotNull TypeAdapter<?> adapter;
+
+    /**
+     * Reads the next value of the given reader, without deserializing it.
+     * When reading from a {@link JsonElement}, this keeps a reference to
+     * the element instead of copying it.
+     *
+     * @param in      The reader
+     * @param adapter The adapter that deserializes the value
+     */
+    public LazyBlueprint(@NotNull JsonReader in, @NotNull TypeAdapter<?> adapter) {
+        this.node = JsonParser.parseReader(in);
+        this.adapter = adapter;
+    }
+
+    /**
+     * Deserializes the pending content
+     *
+     * @return The deserialized blueprint
+     */
+    public @Nullable Object materialize() {
+        return adapter.fromJsonTree(node);
+    }
+}
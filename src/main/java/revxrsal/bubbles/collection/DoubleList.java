@@ -0,0 +1,222 @@
+/*
+ * This file is part of Bubbles, licensed under the MIT License.
+ *
+ *  Copyright (c) Revxrsal <reflxction.github@gmail.com>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+package revxrsal.bubbles.collection;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.StringJoiner;
+import java.util.function.DoubleConsumer;
+import java.util.stream.DoubleStream;
+
+/**
+ * A growable list of {@code double}s, backed by a {@code double[]}.
+ * <p>
+ * This can be used as a blueprint property in place of {@code List<Double>}.
+ * Elements are stored and serialized without boxing, which saves a lot of
+ * memory for large numeric tables.
+ */
+public final class DoubleList {
+
+    private static final double[] EMPTY = new double[0];
+
+    private double[] elements;
+    private int size;
+
+    public DoubleList() {
+        this.elements = EMPTY;
+    }
+
+    public DoubleList(int initialCapacity) {
+        if (initialCapacity < 0)
+            throw new IllegalArgumentException("Negative capacity: " + initialCapacity);
+        this.elements = initialCapacity == 0 ? EMPTY : new double[initialCapacity];
+    }
+
+    /**
+     * Creates a list that contains the given elements
+     *
+     * @param elements The elements
+     * @return The newly created list
+     */
+    public static @NotNull DoubleList of(double @NotNull ... elements) {
+        DoubleList list = new DoubleList(elements.length);
+        list.addAll(elements);
+        return list;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public double get(int index) {
+        checkIndex(index);
+        return elements[index];
+    }
+
+    /**
+     * Replaces the element at the given index
+     *
+     * @param index The index
+     * @param value The new element
+     * @return The previous element
+     */
+    public double set(int index, double value) {
+        checkIndex(index);
+        double previous = elements[index];
+        elements[index] = value;
+        return previous;
+    }
+
+    public void add(double value) {
+        ensureCapacity(size + 1);
+        elements[size++] = value;
+    }
+
+    public void add(int index, double value) {
+        if (index < 0 || index > size)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        ensureCapacity(size + 1);
+        System.arraycopy(elements, index, elements, index + 1, size - index);
+        elements[index] = value;
+        size++;
+    }
+
+    public void addAll(double @NotNull ... values) {
+        ensureCapacity(size + values.length);
+        System.arraycopy(values, 0, elements, size, values.length);
+        size += values.length;
+    }
+
+    /**
+     * Removes the element at the given index
+     *
+     * @param index The index
+     * @return The removed element
+     */
+    public double removeAt(int index) {
+        checkIndex(index);
+        double removed = elements[index];
+        System.arraycopy(elements, index + 1, elements, index, size - index - 1);
+        size--;
+        return removed;
+    }
+
+    /**
+     * Returns the index of the given element. Elements are compared the way
+     * {@link Double#equals(Object)} compares them, so {@code NaN} can be found.
+     *
+     * @param value The element
+     * @return The index, or {@code -1} if not found
+     */
+    public int indexOf(double value) {
+        long bits = Double.doubleToLongBits(value);
+        for (int i = 0; i < size; i++) {
+            if (Double.doubleToLongBits(elements[i]) == bits)
+                return i;
+        }
+        return -1;
+    }
+
+    public boolean contains(double value) {
+        return indexOf(value) >= 0;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public void forEach(@NotNull DoubleConsumer action) {
+        for (int i = 0; i < size; i++)
+            action.accept(elements[i]);
+    }
+
+    public @NotNull DoubleStream stream() {
+        return Arrays.stream(elements, 0, size);
+    }
+
+    public double @NotNull [] toArray() {
+        return Arrays.copyOf(elements, size);
+    }
+
+    /**
+     * Grows the backing array, if needed, so that it can hold at least
+     * the given number of elements
+     *
+     * @param capacity The minimum capacity
+     */
+    public void ensureCapacity(int capacity) {
+        if (capacity > elements.length)
+            elements = Arrays.copyOf(elements, Math.max(capacity, elements.length + (elements.length >> 1) + 1));
+    }
+
+    /**
+     * Shrinks the backing array to the size of this list
+     */
+    public void trimToSize() {
+        if (size < elements.length)
+            elements = size == 0 ? EMPTY : Arrays.copyOf(elements, size);
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (!(o instanceof DoubleList))
+            return false;
+        DoubleList other = (DoubleList) o;
+        if (size != other.size)
+            return false;
+        for (int i = 0; i < size; i++) {
+            if (Double.doubleToLongBits(elements[i]) != Double.doubleToLongBits(other.elements[i]))
+                return false;
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 1;
+        for (int i = 0; i < size; i++)
+            hash = 31 * hash + Double.hashCode(elements[i]);
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        StringJoiner joiner = new StringJoiner(", ", "[", "]");
+        for (int i = 0; i < size; i++)
+            joiner.add(String.valueOf(elements[i]));
+        return joiner.toString();
+    }
+}
@@ -0,0 +1,227 @@
+/*
+ * This file is part of Bubbles, licensed under the MIT License.
+ *
+ *  Copyright (c) Revxrsal <reflxction.github@gmail.com>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+package revxrsal.bubbles.collection;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.StringJoiner;
+import java.util.function.LongConsumer;
+import java.util.stream.LongStream;
+
+/**
+ * A set of {@code long}s that keeps the order in which elements were added,
+ * the same way the {@code LinkedHashSet} of {@code Set} properties does.
+ * <p>
+ * This can be used as a blueprint property in place of {@code Set<Long>}.
+ * Elements are kept in a {@code long[]}, and looked up through an
+ * open-addressing table of indices, so nothing is boxed.
+ * <p>
+ * Removing elements is linear in the size of the set.
+ */
+public final class LongSet {
+
+    private static final long[] EMPTY_ELEMENTS = new long[0];
+    private static final int[] EMPTY = new int[0];
+    private static final int MIN_TABLE_SIZE = 16;
+
+    /**
+     * The elements, in insertion order
+     */
+    private long[] elements = EMPTY_ELEMENTS;
+    private int size;
+
+    /**
+     * Indices into {@link #elements}, plus one. {@code 0} marks a free slot.
+     * The length of the table is always a power of two.
+     */
+    private int[] table = EMPTY;
+
+    /**
+     * Creates a set that contains the given elements
+     *
+     * @param elements The elements
+     * @return The newly created set
+     */
+    public static @NotNull LongSet of(long @NotNull ... elements) {
+        LongSet set = new LongSet();
+        set.addAll(elements);
+        return set;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean contains(long value) {
+        return size != 0 && find(value) >= 0;
+    }
+
+    /**
+     * Adds the given element, if it is not already present
+     *
+     * @param value The element
+     * @return true if the set changed
+     */
+    public boolean add(long value) {
+        ensureTableCapacity(size + 1);
+        int slot = find(value);
+        if (slot >= 0)
+            return false;
+        if (size == elements.length)
+            elements = Arrays.copyOf(elements, Math.max(4, size + (size >> 1)));
+        elements[size++] = value;
+        table[-slot - 1] = size;
+        return true;
+    }
+
+    public void addAll(long @NotNull ... values) {
+        for (long value : values)
+            add(value);
+    }
+
+    /**
+     * Removes the given element
+     *
+     * @param value The element
+     * @return true if the set changed
+     */
+    public boolean remove(long value) {
+        if (size == 0)
+            return false;
+        int slot = find(value);
+        if (slot < 0)
+            return false;
+        int index = table[slot] - 1;
+        System.arraycopy(elements, index + 1, elements, index, size - index - 1);
+        size--;
+        rebuild(table.length);
+        return true;
+    }
+
+    public void clear() {
+        size = 0;
+        Arrays.fill(table, 0);
+    }
+
+    public void forEach(@NotNull LongConsumer action) {
+        for (int i = 0; i < size; i++)
+            action.accept(elements[i]);
+    }
+
+    public @NotNull LongStream stream() {
+        return Arrays.stream(elements, 0, size);
+    }
+
+    /**
+     * Returns the elements of this set, in insertion order
+     *
+     * @return A new array of the elements
+     */
+    public long @NotNull [] toArray() {
+        return Arrays.copyOf(elements, size);
+    }
+
+    long elementAt(int index) {
+        return elements[index];
+    }
+
+    /**
+     * Returns the slot of the given element, or {@code -(slot + 1)} of the
+     * free slot it would be inserted into
+     */
+    private int find(long value) {
+        int mask = table.length - 1;
+        for (int slot = mix(value) & mask; ; slot = (slot + 1) & mask) {
+            int index = table[slot];
+            if (index == 0)
+                return -(slot + 1);
+            if (elements[index - 1] == value)
+                return slot;
+        }
+    }
+
+    private void ensureTableCapacity(int count) {
+        // keeps the load factor at 0.75 or less
+        if (count * 4L > table.length * 3L) {
+            int tableSize = Math.max(MIN_TABLE_SIZE, table.length);
+            while (count * 4L > tableSize * 3L)
+                tableSize <<= 1;
+            rebuild(tableSize);
+        }
+    }
+
+    private void rebuild(int tableSize) {
+        table = new int[tableSize];
+        int mask = tableSize - 1;
+        for (int i = 0; i < size; i++) {
+            int slot = mix(elements[i]) & mask;
+            while (table[slot] != 0)
+                slot = (slot + 1) & mask;
+            table[slot] = i + 1;
+        }
+    }
+
+    private static int mix(long value) {
+        long hash = value * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (!(o instanceof LongSet))
+            return false;
+        LongSet other = (LongSet) o;
+        if (size != other.size)
+            return false;
+        for (int i = 0; i < size; i++) {
+            if (!other.contains(elements[i]))
+                return false;
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        // matches Set<Long>.hashCode()
+        int hash = 0;
+        for (int i = 0; i < size; i++)
+            hash += Long.hashCode(elements[i]);
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        StringJoiner joiner = new StringJoiner(", ", "[", "]");
+        for (int i = 0; i < size; i++)
+            joiner.add(String.valueOf(elements[i]));
+        return joiner.toString();
+    }
+}
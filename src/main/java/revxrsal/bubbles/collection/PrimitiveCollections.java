@@ -0,0 +1,207 @@
+/*
+ * This file is part of Bubbles, licensed under the MIT License.
+ *
+ *  Copyright (c) Revxrsal <reflxction.github@gmail.com>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+package revxrsal.bubbles.collection;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The Gson adapters of the primitive collections in this package. These are
+ * returned by {@link revxrsal.bubbles.blueprint.Blueprints#gsonFactory()}, and
+ * read and write the elements without boxing them.
+ */
+public final class PrimitiveCollections {
+
+    private static final Map<Class<?>, TypeAdapter<?>> ADAPTERS = new HashMap<>();
+
+    static {
+        ADAPTERS.put(IntList.class, new TypeAdapter<IntList>() {
+            @Override
+            public void write(JsonWriter out, IntList value) throws IOException {
+                if (value == null) {
+                    out.nullValue();
+                    return;
+                }
+                out.beginArray();
+                for (int i = 0; i < value.size(); i++)
+                    out.value(value.get(i));
+                out.endArray();
+            }
+
+            @Override
+            public IntList read(JsonReader in) throws IOException {
+                if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                    return null;
+                }
+                IntList list = new IntList();
+                in.beginArray();
+                while (in.hasNext())
+                    list.add(in.nextInt());
+                in.endArray();
+                return list;
+            }
+        });
+        ADAPTERS.put(LongList.class, new TypeAdapter<LongList>() {
+            @Override
+            public void write(JsonWriter out, LongList value) throws IOException {
+                if (value == null) {
+                    out.nullValue();
+                    return;
+                }
+                out.beginArray();
+                for (int i = 0; i < value.size(); i++)
+                    out.value(value.get(i));
+                out.endArray();
+            }
+
+            @Override
+            public LongList read(JsonReader in) throws IOException {
+                if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                    return null;
+                }
+                LongList list = new LongList();
+                in.beginArray();
+                while (in.hasNext())
+                    list.add(in.nextLong());
+                in.endArray();
+                return list;
+            }
+        });
+        ADAPTERS.put(DoubleList.class, new TypeAdapter<DoubleList>() {
+            @Override
+            public void write(JsonWriter out, DoubleList value) throws IOException {
+                if (value == null) {
+                    out.nullValue();
+                    return;
+                }
+                out.beginArray();
+                for (int i = 0; i < value.size(); i++)
+                    out.value(value.get(i));
+                out.endArray();
+            }
+
+            @Override
+            public DoubleList read(JsonReader in) throws IOException {
+                if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                    return null;
+                }
+                DoubleList list = new DoubleList();
+                in.beginArray();
+                while (in.hasNext())
+                    list.add(in.nextDouble());
+                in.endArray();
+                return list;
+            }
+        });
+        ADAPTERS.put(IntSet.class, new TypeAdapter<IntSet>() {
+            @Override
+            public void write(JsonWriter out, IntSet value) throws IOException {
+                if (value == null) {
+                    out.nullValue();
+                    return;
+                }
+                out.beginArray();
+                for (int i = 0; i < value.size(); i++)
+                    out.value(value.elementAt(i));
+                out.endArray();
+            }
+
+            @Override
+            public IntSet read(JsonReader in) throws IOException {
+                if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                    return null;
+                }
+                IntSet set = new IntSet();
+                in.beginArray();
+                while (in.hasNext())
+                    set.add(in.nextInt());
+                in.endArray();
+                return set;
+            }
+        });
+        ADAPTERS.put(LongSet.class, new TypeAdapter<LongSet>() {
+            @Override
+            public void write(JsonWriter out, LongSet value) throws IOException {
+                if (value == null) {
+                    out.nullValue();
+                    return;
+                }
+                out.beginArray();
+                for (int i = 0; i < value.size(); i++)
+                    out.value(value.elementAt(i));
+                out.endArray();
+            }
+
+            @Override
+            public LongSet read(JsonReader in) throws IOException {
+                if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                    return null;
+                }
+                LongSet set = new LongSet();
+                in.beginArray();
+                while (in.hasNext())
+                    set.add(in.nextLong());
+                in.endArray();
+                return set;
+            }
+        });
+    }
+
+    private PrimitiveCollections() {
+    }
+
+    /**
+     * Tests whether the given class is one of the primitive collections
+     * in this package
+     *
+     * @param type The class to check for
+     * @return true if it's a primitive collection
+     */
+    public static boolean isPrimitiveCollection(@NotNull Class<?> type) {
+        return ADAPTERS.containsKey(type);
+    }
+
+    /**
+     * Returns the adapter of the given primitive collection type
+     *
+     * @param type The collection type
+     * @return The adapter, or {@code null} if it is not a primitive collection
+     */
+    public static @Nullable TypeAdapter<?> adapterFor(@NotNull Class<?> type) {
+        return ADAPTERS.get(type);
+    }
+}
@@ -25,8 +25,8 @@ package revxrsal.bubbles.loader;
 
 import org.jetbrains.annotations.NotNull;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Uses an additional class loader. This does not support package-private
@@ -34,7 +34,7 @@ import java.util.Map;
  */
 final class GeneratedDefiner implements ClassDefiner {
 
-    private static final Map<ClassLoader, GClassLoader> loaders = new HashMap<>();
+    private static final Map<ClassLoader, GClassLoader> loaders = new ConcurrentHashMap<>();
 
     @Override
     public @NotNull Class<?> defineClass(@NotNull ClassLoader classLoader, @NotNull String name, byte[] data) {
@@ -75,12 +75,7 @@ final class GeneratedDefiner implements ClassDefiner {
 
         public boolean hasClass(@NotNull String name) {
             synchronized (getClassLoadingLock(name)) {
-                try {
-                    Class.forName(name);
-                    return true;
-                } catch (ClassNotFoundException e) {
-                    return false;
-                }
+                return findLoadedClass(name) != null;
             }
         }
     }
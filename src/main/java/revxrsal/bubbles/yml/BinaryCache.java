@@ -0,0 +1,306 @@
+/*
+ * This file is part of Bubbles, licensed under the MIT License.
+ *
+ *  Copyright (c) Revxrsal <reflxction.github@gmail.com>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+package revxrsal.bubbles.yml;
+
+import com.google.gson.*;
+import lombok.SneakyThrows;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * A compact binary copy of the parsed data of a YAML file, stored next to it.
+ * <p>
+ * The cache starts with the SHA-256 hash of the YAML content it was created
+ * from, and is only used while the YAML file still has that exact content.
+ * Reading it skips the YAML parser and the conversion of the parsed maps into
+ * {@link JsonElement}s, while the YAML file remains the source of truth.
+ * <p>
+ * Values are written as a tag byte followed by their content. Lengths and
+ * integers are written as variable-length integers.
+ */
+final class BinaryCache {
+
+    /**
+     * Identifies cache files, followed by the format version
+     */
+    private static final byte[] MAGIC = {'B', 'B', 'L', 'S'};
+    private static final byte VERSION = 1;
+    private static final int HASH_LENGTH = 32;
+
+    private static final byte NULL = 0;
+    private static final byte TRUE = 1;
+    private static final byte FALSE = 2;
+    private static final byte INT = 3;
+    private static final byte LONG = 4;
+    private static final byte DOUBLE = 5;
+    private static final byte BIG_INTEGER = 6;
+    private static final byte BIG_DECIMAL = 7;
+    private static final byte STRING = 8;
+    private static final byte ARRAY = 9;
+    private static final byte OBJECT = 10;
+
+    private BinaryCache() {
+    }
+
+    /**
+     * Returns the cache file of the given YAML file
+     *
+     * @param file The YAML file
+     * @return The cache file
+     */
+    public static @NotNull Path cacheFileOf(@NotNull Path file) {
+        return file.resolveSibling(file.getFileName() + ".bin");
+    }
+
+    /**
+     * Reads the cached data of the given YAML content
+     *
+     * @param cacheFile The cache file
+     * @param content   The current content of the YAML file
+     * @return The cached data, or {@code null} if there is no cache, or it was
+     * created from different content
+     */
+    public static @Nullable JsonElement read(@NotNull Path cacheFile, byte @NotNull [] content) {
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(cacheFile);
+        } catch (IOException e) {
+            // most likely, the cache does not exist yet
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        try {
+            byte[] magic = new byte[MAGIC.length];
+            buffer.get(magic);
+            if (!Arrays.equals(magic, MAGIC) || buffer.get() != VERSION)
+                return null;
+            byte[] hash = new byte[HASH_LENGTH];
+            buffer.get(hash);
+            if (!MessageDigest.isEqual(hash, hash(content)))
+                return null;
+            JsonElement data = readValue(buffer);
+            return buffer.hasRemaining() ? null : data;
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            // a truncated or corrupted cache is treated like a missing one
+            return null;
+        }
+    }
+
+    /**
+     * Writes the cache of the given YAML content. The cache is written to a
+     * temporary file first, so readers never see a partially written cache.
+     *
+     * @param cacheFile The cache file
+     * @param content   The content of the YAML file
+     * @param data      The data parsed from the content
+     * @throws IOException If writing fails
+     */
+    public static void write(@NotNull Path cacheFile, byte @NotNull [] content, @NotNull JsonElement data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(content.length);
+        out.write(MAGIC);
+        out.write(VERSION);
+        out.write(hash(content));
+        writeValue(out, data);
+
+        Path temp = TempFiles.createFor(cacheFile);
+        try {
+            Files.write(temp, out.toByteArray());
+            TempFiles.replace(temp, cacheFile);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    @SneakyThrows
+    private static byte @NotNull [] hash(byte @NotNull [] content) {
+        return MessageDigest.getInstance("SHA-256").digest(content);
+    }
+
+    private static void writeValue(@NotNull ByteArrayOutputStream out, @NotNull JsonElement value) {
+        if (value.isJsonNull()) {
+            out.write(NULL);
+        } else if (value.isJsonObject()) {
+            JsonObject object = value.getAsJsonObject();
+            out.write(OBJECT);
+            writeVarInt(out, object.size());
+            for (Map.Entry<String, JsonElement> entry : object.entrySet()) {
+                writeString(out, entry.getKey());
+                writeValue(out, entry.getValue());
+            }
+        } else if (value.isJsonArray()) {
+            JsonArray array = value.getAsJsonArray();
+            out.write(ARRAY);
+            writeVarInt(out, array.size());
+            for (JsonElement element : array)
+                writeValue(out, element);
+        } else {
+            JsonPrimitive primitive = value.getAsJsonPrimitive();
+            if (primitive.isBoolean()) {
+                out.write(primitive.getAsBoolean() ? TRUE : FALSE);
+            } else if (primitive.isString()) {
+                out.write(STRING);
+                writeString(out, primitive.getAsString());
+            } else {
+                writeNumber(out, primitive.getAsNumber());
+            }
+        }
+    }
+
+    private static void writeNumber(@NotNull ByteArrayOutputStream out, @NotNull Number number) {
+        if (number instanceof Integer || number instanceof Short || number instanceof Byte) {
+            out.write(INT);
+            writeVarLong(out, number.intValue());
+        } else if (number instanceof Long) {
+            out.write(LONG);
+            writeVarLong(out, number.longValue());
+        } else if (number instanceof Double || number instanceof Float) {
+            out.write(DOUBLE);
+            long bits = Double.doubleToRawLongBits(number.doubleValue());
+            for (int shift = 56; shift >= 0; shift -= 8)
+                out.write((int) (bits >>> shift));
+        } else if (number instanceof BigInteger) {
+            out.write(BIG_INTEGER);
+            writeString(out, number.toString());
+        } else {
+            out.write(BIG_DECIMAL);
+            writeString(out, number.toString());
+        }
+    }
+
+    private static void writeString(@NotNull ByteArrayOutputStream out, @NotNull String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, bytes.length);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    private static void writeVarInt(@NotNull ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    /**
+     * Writes a zig-zag encoded variable-length long, so that small negative
+     * numbers stay small
+     */
+    private static void writeVarLong(@NotNull ByteArrayOutputStream out, long value) {
+        long zigZag = (value << 1) ^ (value >> 63);
+        while ((zigZag & ~0x7FL) != 0) {
+            out.write((int) ((zigZag & 0x7F) | 0x80));
+            zigZag >>>= 7;
+        }
+        out.write((int) zigZag);
+    }
+
+    private static @NotNull JsonElement readValue(@NotNull ByteBuffer buffer) {
+        byte tag = buffer.get();
+        switch (tag) {
+            case NULL:
+                return JsonNull.INSTANCE;
+            case TRUE:
+                return new JsonPrimitive(true);
+            case FALSE:
+                return new JsonPrimitive(false);
+            case INT:
+                return new JsonPrimitive((int) readVarLong(buffer));
+            case LONG:
+                return new JsonPrimitive(readVarLong(buffer));
+            case DOUBLE:
+                return new JsonPrimitive(Double.longBitsToDouble(buffer.getLong()));
+            case BIG_INTEGER:
+                return new JsonPrimitive(new BigInteger(readString(buffer)));
+            case BIG_DECIMAL:
+                return new JsonPrimitive(new BigDecimal(readString(buffer)));
+            case STRING:
+                return new JsonPrimitive(readString(buffer));
+            case ARRAY: {
+                int size = readVarInt(buffer);
+                JsonArray array = new JsonArray(size);
+                for (int i = 0; i < size; i++)
+                    array.add(readValue(buffer));
+                return array;
+            }
+            case OBJECT: {
+                int size = readVarInt(buffer);
+                JsonObject object = new JsonObject();
+                for (int i = 0; i < size; i++) {
+                    String key = readString(buffer);
+                    object.add(key, readValue(buffer));
+                }
+                return object;
+            }
+            default:
+                throw new IllegalArgumentException("Unknown value tag: " + tag);
+        }
+    }
+
+    private static @NotNull String readString(@NotNull ByteBuffer buffer) {
+        int length = readVarInt(buffer);
+        if (length > buffer.remaining())
+            throw new BufferUnderflowException();
+        String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    private static int readVarInt(@NotNull ByteBuffer buffer) {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                if (value < 0)
+                    throw new IllegalArgumentException("Negative length: " + value);
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed variable-length integer");
+    }
+
+    private static long readVarLong(@NotNull ByteBuffer buffer) {
+        long zigZag = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = buffer.get();
+            zigZag |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return (zigZag >>> 1) ^ -(zigZag & 1);
+        }
+        throw new IllegalArgumentException("Malformed variable-length integer");
+    }
+}
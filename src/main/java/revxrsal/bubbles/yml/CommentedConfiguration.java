@@ -25,6 +25,7 @@ package revxrsal.bubbles.yml;
 
 import com.google.gson.*;
 import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
 import lombok.SneakyThrows;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -33,15 +34,34 @@ import org.yaml.snakeyaml.Yaml;
 import org.yaml.snakeyaml.events.*;
 import revxrsal.bubbles.blueprint.BlueprintClass;
 import revxrsal.bubbles.blueprint.Blueprints;
+import revxrsal.bubbles.blueprint.CommentTree;
 
-import java.io.BufferedReader;
 import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.io.StringReader;
+import java.io.StringWriter;
 import java.lang.reflect.Method;
 import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.regex.Pattern;
 
 import static java.nio.file.StandardOpenOption.*;
@@ -73,15 +93,53 @@ public final class CommentedConfiguration {
     private static final Pattern NEW_LINE = Pattern.compile("\n");
 
     /**
-     * YAML processor instance for reading and writing YAML data.
+     * The environment that holds the YAML setup of this configuration
      */
-    private final Yaml yaml;
+    private final ConfigurationEnvironment environment;
 
     /**
      * A map storing comments associated with specific configuration keys.
      */
     private final Map<String, String> configComments = new HashMap<>();
 
+    /**
+     * {@link #configComments} compiled into a tree, or {@code null} if they
+     * changed since they were last compiled
+     */
+    private volatile @Nullable CommentTree commentTree = CommentTree.EMPTY;
+
+    /**
+     * The segments of the dotted paths that were looked up. This is shared
+     * by all the snapshots of this configuration.
+     */
+    private final Map<String, String[]> pathIndex = new ConcurrentHashMap<>();
+
+    /**
+     * Whether deserialized values are cached. See {@link #setCacheViews(boolean)}
+     */
+    private volatile boolean cacheViews = false;
+
+    /**
+     * Whether the file is read through a memory mapping. See {@link #setMemoryMapped(boolean)}
+     */
+    private volatile boolean memoryMapped = false;
+
+    /**
+     * Whether a binary copy of the parsed data is kept next to the file.
+     * See {@link #setBinaryCache(boolean)}
+     */
+    private volatile boolean binaryCache = false;
+
+    /**
+     * The cached values of {@link #get(String, Type)}, by path and type
+     */
+    private final Map<String, Map<Type, View>> views = new ConcurrentHashMap<>();
+
+    /**
+     * The cached values of {@link #getAs(Type)}, by type
+     */
+    private final Map<Type, View> rootViews = new ConcurrentHashMap<>();
+
     /**
      * Gson instance for serializing and deserializing JSON data.
      */
@@ -93,23 +151,91 @@ public final class CommentedConfiguration {
     private final Path file;
 
     /**
-     * The JSON representation of the configuration data.
+     * The current snapshot of the configuration data. Snapshots are never
+     * modified after being published here, see {@link ConfigurationSnapshot}.
+     */
+    private volatile @NotNull ConfigurationSnapshot snapshot;
+
+    /**
+     * Serializes changes to the data and the change tracking state. Readers
+     * never take this lock.
      */
-    private JsonElement data = JsonNull.INSTANCE;
+    private final Object writeLock = new Object();
 
     /**
      * The array commenting style
      */
     private final ArrayCommentStyle arrayCommentStyle;
 
-    CommentedConfiguration(Path file, Gson gson, ArrayCommentStyle arrayCommentStyle) {
-        this.gson = gson;
+    /**
+     * The top-level keys changed with {@link #set(String, Object)} since the
+     * file was last loaded or saved
+     */
+    private final Set<String> dirtyKeys = new LinkedHashSet<>();
+
+    /**
+     * The top-level keys that were renamed by a migration since the file was
+     * last loaded or saved, mapped to their new names
+     */
+    private final Map<String, String> renamedKeys = new LinkedHashMap<>();
+
+    /**
+     * Whether the data or comments changed in a way that requires rewriting
+     * the whole file, such as adding keys or replacing the data.
+     */
+    private boolean structureChanged = true;
+
+    /**
+     * The regions of the top-level keys in the file, computed lazily by
+     * {@link #saveChanges()}
+     */
+    private @Nullable YamlRegions regions;
+
+    /**
+     * The size and modification time of the file when it was last loaded or
+     * written by this configuration, used to detect external changes. Guarded
+     * by {@link #saveLock}.
+     */
+    private long fileSize = -1;
+    private @Nullable FileTime fileModified;
+
+    /**
+     * Guards writes to the file, so that an older snapshot written by
+     * {@link #saveAsync()} never replaces newer content.
+     */
+    private final Object saveLock = new Object();
+
+    /**
+     * The version of the last snapshot taken for saving, and of the last
+     * snapshot written to the file. Guarded by {@link #saveLock}.
+     */
+    private long saveVersion = 0;
+    private long writtenVersion = 0;
+
+    /**
+     * The snapshot waiting to be written by {@link #saveAsync()}. Guarded
+     * by {@link #saveLock}.
+     */
+    private @Nullable PendingSave pendingSave;
+
+    /**
+     * The window in which asynchronous saves are coalesced, in nanoseconds
+     */
+    private volatile long saveWindow = TimeUnit.MILLISECONDS.toNanos(50);
+
+    /**
+     * Notified with the content of the file after every write, so that
+     * {@link ConfigurationWatcher watchers} can tell the writes of this
+     * configuration apart from external changes.
+     */
+    private final List<Consumer<byte[]>> writeListeners = new CopyOnWriteArrayList<>();
+
+    CommentedConfiguration(Path file, ConfigurationEnvironment environment) {
+        this.environment = environment;
+        this.gson = environment.getGson();
         this.file = file;
-        this.arrayCommentStyle = arrayCommentStyle;
-        DumperOptions options = new DumperOptions();
-        setProcessComments(options, false);
-        options.setDefaultFlowStyle(DumperOptions.FlowStyle.BLOCK);
-        this.yaml = new Yaml(options);
+        this.arrayCommentStyle = environment.getArrayCommentStyle();
+        this.snapshot = new ConfigurationSnapshot(JsonNull.INSTANCE, gson, pathIndex);
     }
 
     /**
@@ -117,10 +243,164 @@ public final class CommentedConfiguration {
      */
     @SneakyThrows
     public void load() {
-        try (BufferedReader reader = Files.newBufferedReader(file)) {
-            Map<String, Object> map = yaml.load(reader);
+        // read before the content, so that changes made while reading are
+        // still detected by saveChanges()
+        BasicFileAttributes attributes = fileAttributes();
+        if (binaryCache) {
+            reloaded(loadCached(), attributes);
+            return;
+        }
+        JsonElement data;
+        try (Reader reader = openReader()) {
+            Map<String, Object> map = yaml().load(reader);
             data = gson.toJsonTree(map, MAP_TYPE);
         }
+        reloaded(data, attributes);
+    }
+
+    /**
+     * Parses the given file content the same way {@link #load()} does,
+     * without changing the data of this configuration
+     *
+     * @param content The file content
+     * @return The parsed data
+     */
+    @NotNull JsonElement parse(byte @NotNull [] content) {
+        Map<String, Object> map = yaml().load(new InputStreamReader(new ByteArrayInputStream(content), StandardCharsets.UTF_8));
+        return gson.toJsonTree(map, MAP_TYPE);
+    }
+
+    /**
+     * Replaces the data with content that was reloaded from the file
+     *
+     * @param data The reloaded data
+     */
+    @SneakyThrows
+    void reloaded(@NotNull JsonElement data) {
+        reloaded(data, fileAttributes());
+    }
+
+    private void reloaded(@NotNull JsonElement data, @Nullable BasicFileAttributes attributes) {
+        synchronized (writeLock) {
+            publish(data);
+            markClean();
+            clearViews();
+            synchronized (saveLock) {
+                recordFileState(attributes);
+            }
+        }
+    }
+
+    /**
+     * Reads the content of this configuration directly into the given type.
+     * <p>
+     * Unlike {@link #load()} followed by {@link #getAs(Type)}, this streams the
+     * YAML content straight into the deserialized object, without building the
+     * intermediate map and JSON trees. Note that this does not update
+     * {@link #getData()}, so it is best suited for read-only configurations, or
+     * ones that are later replaced using {@link #setTo(Object)}.
+     * <p>
+     * Scalars, keys, anchors and merge keys are resolved the same way as
+     * {@link #load()} does, and content with more than one document is rejected
+     * as well. The only difference is that timestamps, binary values and values
+     * with custom tags are read as strings, where {@link #load()} constructs
+     * dedicated Java objects for them or rejects them.
+     *
+     * @param type The type to deserialize the content into.
+     * @param <T>  The type of the returned value.
+     * @return The deserialized content.
+     */
+    @SneakyThrows
+    public <T> T loadAs(@NotNull Type type) {
+        if (binaryCache)
+            return gson.fromJson(loadCached(), type);
+        try (Reader reader = openReader()) {
+            YamlToJsonReader json = new YamlToJsonReader(yaml().parse(reader).iterator());
+            return gson.fromJson(new JsonReader(json), type);
+        }
+    }
+
+    /**
+     * Opens a reader over the configuration file, memory-mapping it if
+     * {@link #setMemoryMapped(boolean) enabled}
+     *
+     * @return The reader
+     * @throws IOException If the file cannot be opened
+     */
+    private @NotNull Reader openReader() throws IOException {
+        if (memoryMapped)
+            return MappedFileReader.open(file);
+        return Files.newBufferedReader(file);
+    }
+
+    /**
+     * Sets whether {@link #load()} and {@link #loadAs(Type)} read the file
+     * through a memory mapping.
+     * <p>
+     * Mapped files are decoded straight from the mapped pages into the parser's
+     * buffer, without first copying them into heap buffers. This speeds up
+     * reading large files, such as generated data tables, at the cost of a
+     * mapping that lives until it is garbage collected. On some platforms
+     * (notably Windows), the file cannot be replaced while it is still mapped,
+     * so this is best suited for files that are mostly read.
+     *
+     * @param memoryMapped Whether to memory-map the file when reading it
+     */
+    public void setMemoryMapped(boolean memoryMapped) {
+        this.memoryMapped = memoryMapped;
+    }
+
+    /**
+     * Reads the data of the file from its binary cache, or parses the file
+     * and caches the data if the cache is missing or outdated
+     *
+     * @return The data of the file
+     * @throws IOException If the file cannot be read
+     */
+    private @NotNull JsonElement loadCached() throws IOException {
+        byte[] content = Files.readAllBytes(file);
+        Path cacheFile = BinaryCache.cacheFileOf(file);
+        JsonElement data = BinaryCache.read(cacheFile, content);
+        if (data == null) {
+            data = parse(content);
+            try {
+                BinaryCache.write(cacheFile, content, data);
+            } catch (IOException ignored) {
+                // the cache is only an optimization, the file was still loaded
+            }
+        }
+        return data;
+    }
+
+    /**
+     * Sets whether a binary copy of the parsed data is kept next to the file,
+     * named after it with a {@code .bin} extension.
+     * <p>
+     * When enabled, {@link #load()} and {@link #loadAs(Type)} read the binary
+     * copy instead of parsing the YAML, as long as the YAML content is exactly
+     * the one the copy was created from. Otherwise, the YAML is parsed and the
+     * copy is rewritten. The YAML file remains the source of truth, and can
+     * be edited freely.
+     * <p>
+     * This speeds up loading large files that rarely change. Note that the
+     * file is still read and hashed on every load.
+     *
+     * @param binaryCache Whether to keep a binary copy of the data
+     */
+    public void setBinaryCache(boolean binaryCache) {
+        this.binaryCache = binaryCache;
+    }
+
+    /**
+     * Reads the content of this configuration directly into the given class.
+     *
+     * @param type The class to deserialize the content into.
+     * @param <T>  The type of the returned value.
+     * @return The deserialized content.
+     * @see #loadAs(Type)
+     */
+    public <T> T loadAs(@NotNull Class<T> type) {
+        return loadAs((Type) type);
     }
 
     /**
@@ -132,6 +412,8 @@ public final class CommentedConfiguration {
      */
     public void setComment(@NotNull String path, @NotNull String comment) {
         this.configComments.put(path, comment);
+        this.commentTree = null;
+        structureChanged = true;
     }
 
     /**
@@ -142,6 +424,35 @@ public final class CommentedConfiguration {
     public void setComments(@NotNull Map<String, String> comments) {
         this.configComments.clear();
         this.configComments.putAll(comments);
+        this.commentTree = null;
+        structureChanged = true;
+    }
+
+    /**
+     * Sets the comments of this configuration file to the comments of the given
+     * blueprint. Unlike {@link #setComments(Map)}, this reuses the comments that
+     * the blueprint has already compiled.
+     *
+     * @param blueprint The blueprint to take the comments of
+     */
+    public void setComments(@NotNull BlueprintClass blueprint) {
+        this.configComments.clear();
+        this.configComments.putAll(blueprint.comments());
+        this.commentTree = blueprint.commentTree();
+        structureChanged = true;
+    }
+
+    /**
+     * Returns the comments of this configuration, compiling them if they
+     * changed since they were last compiled
+     *
+     * @return The comment tree
+     */
+    private @NotNull CommentTree commentTree() {
+        CommentTree commentTree = this.commentTree;
+        if (commentTree == null)
+            this.commentTree = commentTree = CommentTree.compile(configComments);
+        return commentTree;
     }
 
     /**
@@ -149,27 +460,488 @@ public final class CommentedConfiguration {
      */
     @SneakyThrows
     public void save() {
+        JsonElement data;
+        long version;
+        synchronized (writeLock) {
+            markClean();
+            data = snapshot.getData();
+            synchronized (saveLock) {
+                version = ++saveVersion;
+            }
+        }
+        synchronized (saveLock) {
+            // a newer snapshot may have been written in the meantime
+            if (version > writtenVersion) {
+                write(file, data, commentTree());
+                writtenVersion = version;
+                recordFileState(fileAttributes());
+                notifyWritten();
+            }
+        }
+    }
+
+    /**
+     * Saves this configuration asynchronously.
+     * <p>
+     * A snapshot of the data and comments is taken on the calling thread, and
+     * is serialized and written on a background thread once the save window
+     * (see {@link #setSaveWindow(long, TimeUnit)}) elapses. Calls made within
+     * the window are coalesced: only the latest snapshot is written, and all of
+     * them share the same future.
+     * <p>
+     * The content is written to a temporary file first, which is then atomically
+     * moved over the configuration file, so readers never see a partially
+     * written file.
+     *
+     * @return A future that completes once the snapshot has been written
+     */
+    public @NotNull CompletableFuture<Void> saveAsync() {
+        // comment trees are immutable, so there is no need to copy them either
+        CommentTree comments = commentTree();
+        synchronized (writeLock) {
+            // snapshots are immutable, so there is no need to copy the data
+            JsonElement data = snapshot.getData();
+            // the file only matches the data once the write is done
+            structureChanged = true;
+            synchronized (saveLock) {
+                long version = ++saveVersion;
+                if (pendingSave != null) {
+                    pendingSave.data = data;
+                    pendingSave.comments = comments;
+                    pendingSave.version = version;
+                    return pendingSave.future;
+                }
+                PendingSave pending = pendingSave = new PendingSave(data, comments, version);
+                SaveExecutor.EXECUTOR.schedule(this::writePendingSave, saveWindow, TimeUnit.NANOSECONDS);
+                return pending.future;
+            }
+        }
+    }
+
+    /**
+     * Sets the window in which calls to {@link #saveAsync()} are coalesced
+     * into a single write.
+     *
+     * @param window The window duration
+     * @param unit   The window unit
+     */
+    public void setSaveWindow(long window, @NotNull TimeUnit unit) {
+        if (window < 0)
+            throw new IllegalArgumentException("Save window cannot be negative");
+        this.saveWindow = unit.toNanos(window);
+    }
+
+    private void writePendingSave() {
+        PendingSave pending;
+        synchronized (saveLock) {
+            pending = pendingSave;
+            pendingSave = null;
+        }
+        Path temp = null;
+        Throwable failure = null;
+        try {
+            temp = TempFiles.createFor(file);
+            write(temp, pending.data, pending.comments);
+            synchronized (saveLock) {
+                // a newer snapshot has already been written with save()
+                if (pending.version > writtenVersion) {
+                    TempFiles.replace(temp, file);
+                    writtenVersion = pending.version;
+                    recordFileState(fileAttributes());
+                    notifyWritten();
+                }
+            }
+        } catch (Throwable t) {
+            failure = t;
+        } finally {
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException ignored) {
+                }
+            }
+        }
+        // only complete once the temporary file is gone
+        if (failure == null)
+            pending.future.complete(null);
+        else
+            pending.future.completeExceptionally(failure);
+    }
+
+    /**
+     * Writes the given data and comments to the given file
+     *
+     * @param target   The file to write to
+     * @param data     The data to write
+     * @param comments The comments to write
+     */
+    private void write(@NotNull Path target, @NotNull JsonElement data, @NotNull CommentTree comments) throws IOException {
         Map<String, Object> dataToMap = gson.fromJson(data, MAP_TYPE);
-        if (configComments.isEmpty()) {
-            try (BufferedWriter writer = Files.newBufferedWriter(file, CREATE, TRUNCATE_EXISTING, WRITE)) {
-                yaml.dump(dataToMap, writer);
+        if (comments.isEmpty()) {
+            try (BufferedWriter writer = Files.newBufferedWriter(target, CREATE, TRUNCATE_EXISTING, WRITE)) {
+                yaml().dump(dataToMap, writer);
             }
             return;
         }
-        String simpleDump = yaml.dump(dataToMap);
+        if (SET_PROCESS_COMMENTS != null) {
+            try (BufferedWriter writer = Files.newBufferedWriter(target, CREATE, TRUNCATE_EXISTING, WRITE)) {
+                new CommentedYamlWriter(yaml(), environment.commentOptions(), writer, comments, arrayCommentStyle)
+                        .write(dataToMap);
+            }
+            return;
+        }
+        // older SnakeYAML versions cannot emit comments, so we have to
+        // inject them into the dumped lines.
+        String simpleDump = yaml().dump(dataToMap);
         String[] aLines = NEW_LINE.split(simpleDump);
         List<String> lines = new ArrayList<>();
         Collections.addAll(lines, aLines);
         StringReader reader = new StringReader(simpleDump);
-        Iterable<Event> events = yaml.parse(reader);
-        handleEvents(events.iterator(), lines); // terribly inefficient way but I can't care less lol
+        Iterable<Event> events = yaml().parse(reader);
+        handleEvents(events.iterator(), lines, comments); // terribly inefficient way but I can't care less lol
         if (!lines.isEmpty()) {
             String first = lines.get(0);
             if (Character.isWhitespace(first.charAt(0))) {
                 lines.set(0, first.substring(1));
             }
         }
-        Files.write(file, lines, CREATE, TRUNCATE_EXISTING, WRITE);
+        Files.write(target, lines, CREATE, TRUNCATE_EXISTING, WRITE);
+    }
+
+    /**
+     * Saves only the top-level keys that were changed with {@link #set(String, Object)}
+     * since the file was last loaded or saved. Setting a nested key rewrites the
+     * top-level key that contains it.
+     * <p>
+     * The regions of the changed keys (including their comments) are re-serialized
+     * and patched into the existing file, leaving the rest of the file untouched.
+     * If the structure changed (keys were added or removed, comments were changed,
+     * or the data was replaced with {@link #setTo(Object)}), this falls back to
+     * a full {@link #save()}. The same happens if the size or modification time
+     * of the file changed since it was last loaded or written by this
+     * configuration, as the file may no longer match the data.
+     */
+    @SneakyThrows
+    public void saveChanges() {
+        synchronized (writeLock) {
+            if (!structureChanged && dirtyKeys.isEmpty())
+                return;
+            if (structureChanged || SET_PROCESS_COMMENTS == null || !patchChangedRegions())
+                save();
+        }
+    }
+
+    /**
+     * Patches the regions of the dirty keys into the file
+     *
+     * @return {@code true} if the file was patched, {@code false} if a full
+     * save is needed instead.
+     */
+    private boolean patchChangedRegions() throws IOException {
+        JsonElement data = snapshot.getData();
+        if (!data.isJsonObject() || !Files.isRegularFile(file))
+            return false;
+        synchronized (saveLock) {
+            BasicFileAttributes attributes = fileAttributes();
+            if (attributes == null || attributes.size() != fileSize || !attributes.lastModifiedTime().equals(fileModified))
+                return false;
+        }
+        if (regions == null) {
+            regions = YamlRegions.scan(yaml(), Files.readAllBytes(file));
+            if (regions == null)
+                return false;
+        }
+        JsonObject object = data.getAsJsonObject();
+        // renamed keys take the place of the old ones, along with their comments
+        Set<String> renamed = new HashSet<>();
+        for (Map.Entry<String, String> rename : renamedKeys.entrySet()) {
+            if (regions.regionOf(rename.getKey()) != null && regions.regionOf(rename.getValue()) == null) {
+                regions.rename(rename.getKey(), rename.getValue());
+                renamed.add(rename.getValue());
+            }
+        }
+        // keys that are in the file are rewritten in place, or removed if they
+        // are no longer in the data. New keys are appended to the end of the file.
+        List<String> keys = new ArrayList<>();
+        for (String key : dirtyKeys) {
+            if (regions.regionOf(key) != null) {
+                keys.add(key);
+                if (!object.has(key))
+                    regions.keepLeadingComments(key);
+            }
+        }
+        keys.sort(Comparator.comparingLong(key -> regions.regionOf(key)[0]));
+        List<String> added = new ArrayList<>();
+        for (String key : object.keySet()) {
+            if (dirtyKeys.contains(key) && regions.regionOf(key) == null)
+                added.add(key);
+        }
+
+        List<long[]> ranges = new ArrayList<>(keys.size());
+        List<byte[]> contents = new ArrayList<>(keys.size());
+        boolean sameLength = added.isEmpty();
+        long size = Files.size(file);
+        int removed = 0;
+        for (String key : keys) {
+            long[] region = regions.regionOf(key);
+            byte[] content;
+            long from = region[0];
+            if (!object.has(key)) {
+                content = new byte[0];
+                removed++;
+            } else if (hasComment(key) && !renamed.contains(key)) {
+                content = writeEntry(key, object.get(key), regions.isAtStart(key), true);
+            } else {
+                // keep the comments that are already above the key
+                from = regions.rewriteStart(key, false);
+                content = writeEntry(key, object.get(key), true, false);
+            }
+            // the range also remembers where the region started
+            ranges.add(new long[]{from, region[1], region[0]});
+            contents.add(content);
+            sameLength &= content.length == region[1] - from;
+            size += content.length - (region[1] - from);
+        }
+        List<byte[]> addedContents = new ArrayList<>(added.size());
+        // whether everything before the added keys was removed, except for the header
+        boolean atStart = regions.isHeaderOnly(size, removed);
+        for (String key : added) {
+            addedContents.add(writeEntry(key, object.get(key), atStart, true));
+            atStart = false;
+        }
+
+        synchronized (saveLock) {
+            writtenVersion = ++saveVersion;
+            patchRegions(keys, ranges, contents, sameLength);
+            if (!added.isEmpty())
+                appendRegions(added, addedContents);
+            recordFileState(fileAttributes());
+            notifyWritten();
+        }
+        dirtyKeys.clear();
+        renamedKeys.clear();
+        return true;
+    }
+
+    /**
+     * Returns the attributes of the file
+     *
+     * @return The attributes, or {@code null} if the file does not exist
+     */
+    private @Nullable BasicFileAttributes fileAttributes() throws IOException {
+        try {
+            return Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Remembers the state of the file after it was loaded or written. Must
+     * be called while holding {@link #saveLock}.
+     *
+     * @param attributes The attributes of the file, or {@code null} if it does not exist
+     */
+    private void recordFileState(@Nullable BasicFileAttributes attributes) {
+        fileSize = attributes == null ? -1 : attributes.size();
+        fileModified = attributes == null ? null : attributes.lastModifiedTime();
+    }
+
+    /**
+     * Adds a listener that is notified with the content of the file after
+     * every write made by this configuration
+     *
+     * @param listener The listener
+     */
+    void addWriteListener(@NotNull Consumer<byte[]> listener) {
+        writeListeners.add(listener);
+    }
+
+    /**
+     * Removes a listener added with {@link #addWriteListener(Consumer)}
+     *
+     * @param listener The listener
+     */
+    void removeWriteListener(@NotNull Consumer<byte[]> listener) {
+        writeListeners.remove(listener);
+    }
+
+    /**
+     * Passes the content of the file to the write listeners. Must be
+     * called while holding {@link #saveLock}, right after writing.
+     */
+    private void notifyWritten() throws IOException {
+        if (writeListeners.isEmpty())
+            return;
+        byte[] content = Files.readAllBytes(file);
+        for (Consumer<byte[]> listener : writeListeners)
+            listener.accept(content);
+    }
+
+    /**
+     * Serializes a single top-level entry with its comments
+     *
+     * @param key     The entry key
+     * @param value   The entry value
+     * @param atStart Whether the entry is the first thing in the file
+     * @param comment Whether to write the comment of the key itself
+     * @return The serialized entry
+     */
+    private byte @NotNull [] writeEntry(@NotNull String key, @NotNull JsonElement value, boolean atStart, boolean comment) throws IOException {
+        StringWriter writer = new StringWriter();
+        new CommentedYamlWriter(yaml(), environment.commentOptions(), writer, commentTree(), arrayCommentStyle)
+                .writeEntry(key, gson.fromJson(value, Object.class), atStart, comment);
+        return writer.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Checks whether the configuration defines a comment for the given top-level key
+     *
+     * @param key The key
+     * @return Whether the key has a comment
+     */
+    private boolean hasComment(@NotNull String key) {
+        CommentTree node = commentTree().child(key);
+        return node != null && node.comment() != null;
+    }
+
+    private void patchRegions(@NotNull List<String> keys, @NotNull List<long[]> ranges,
+                              @NotNull List<byte[]> contents, boolean sameLength) throws IOException {
+        if (keys.isEmpty())
+            return;
+        YamlRegions regions = this.regions;
+        try (FileChannel channel = FileChannel.open(file, READ, WRITE)) {
+            if (sameLength) {
+                for (int i = 0; i < keys.size(); i++)
+                    writeFully(channel, ByteBuffer.wrap(contents.get(i)), ranges.get(i)[0]);
+            } else {
+                // everything after the first changed range has to move
+                long from = ranges.get(0)[0];
+                ByteBuffer tail = ByteBuffer.allocate((int) (channel.size() - from));
+                while (tail.hasRemaining()) {
+                    if (channel.read(tail, from + tail.position()) < 0)
+                        break;
+                }
+                tail.flip();
+                ByteArrayOutputStream out = new ByteArrayOutputStream(tail.capacity());
+                int copied = 0;
+                for (int i = 0; i < keys.size(); i++) {
+                    long[] range = ranges.get(i);
+                    out.write(tail.array(), copied, (int) (range[0] - from) - copied);
+                    out.write(contents.get(i));
+                    copied = (int) (range[1] - from);
+                }
+                out.write(tail.array(), copied, tail.limit() - copied);
+                writeFully(channel, ByteBuffer.wrap(out.toByteArray()), from);
+                channel.truncate(from + out.size());
+            }
+        }
+        for (int i = 0; i < keys.size(); i++) {
+            String key = keys.get(i);
+            long[] range = ranges.get(i);
+            if (contents.get(i).length == 0)
+                regions.remove(key);
+            else
+                regions.resize(key, contents.get(i).length - (range[1] - range[0]), range[0] == range[2]);
+        }
+    }
+
+    private void appendRegions(@NotNull List<String> keys, @NotNull List<byte[]> contents) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, READ, WRITE)) {
+            long position = channel.size();
+            for (int i = 0; i < keys.size(); i++) {
+                long start = position;
+                ByteBuffer content = ByteBuffer.wrap(contents.get(i));
+                if (position > 0 && !endsWithNewLine(channel, position))
+                    position += channel.write(ByteBuffer.wrap(new byte[]{'\n'}), position);
+                writeFully(channel, content, position);
+                position += contents.get(i).length;
+                regions.append(keys.get(i), start, position);
+            }
+        }
+    }
+
+    private static boolean endsWithNewLine(@NotNull FileChannel channel, long size) throws IOException {
+        ByteBuffer last = ByteBuffer.allocate(1);
+        return channel.read(last, size - 1) == 1 && last.get(0) == '\n';
+    }
+
+    private static void writeFully(@NotNull FileChannel channel, @NotNull ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining())
+            position += channel.write(buffer, position);
+    }
+
+    /**
+     * Replaces the data with the result of a migration, marking only the
+     * given top-level keys as changed, so that {@link #saveChanges()} patches
+     * them into the file. Keys that were added are appended, keys that were
+     * removed are cut out of the file, and renamed keys are rewritten in place
+     * of the old ones.
+     * <p>
+     * The comments of the blueprint are used for the changed keys. Comments
+     * of the other keys are already in the file and are left untouched, and so
+     * are the comments above renamed keys.
+     *
+     * @param data        The migrated data
+     * @param changedKeys The top-level keys that were added, removed or changed
+     * @param renamedKeys The top-level keys that were renamed, mapped to their new names
+     * @param blueprint   The blueprint whose comments to use
+     */
+    void migrated(
+            @NotNull JsonObject data,
+            @NotNull Collection<String> changedKeys,
+            @NotNull Map<String, String> renamedKeys,
+            @NotNull BlueprintClass blueprint
+    ) {
+        synchronized (writeLock) {
+            configComments.clear();
+            configComments.putAll(blueprint.comments());
+            commentTree = blueprint.commentTree();
+            publish(data);
+            dirtyKeys.addAll(changedKeys);
+            this.renamedKeys.putAll(renamedKeys);
+            clearViews();
+        }
+    }
+
+    /**
+     * Returns the Gson instance of this configuration
+     *
+     * @return The Gson instance
+     */
+    @NotNull Gson gson() {
+        return gson;
+    }
+
+    /**
+     * Returns the YAML instance to use on the current thread
+     *
+     * @return The YAML instance
+     */
+    private @NotNull Yaml yaml() {
+        return environment.yaml();
+    }
+
+    /**
+     * Marks the content of the file as matching the current snapshot
+     */
+    private void markClean() {
+        dirtyKeys.clear();
+        renamedKeys.clear();
+        structureChanged = false;
+        regions = null;
+    }
+
+    /**
+     * Marks the given top-level key as changed
+     *
+     * @param key The key
+     */
+    private void markDirty(@NotNull String key) {
+        JsonElement data = snapshot.getData();
+        if (!data.isJsonObject() || !data.getAsJsonObject().has(key))
+            structureChanged = true;
+        dirtyKeys.add(key);
     }
 
     /**
@@ -186,7 +958,7 @@ public final class CommentedConfiguration {
             @NotNull ArrayCommentStyle arrayCommentStyle
     ) {
         //Creating a blank instance of the config.
-        return new CommentedConfiguration(file, gson, arrayCommentStyle);
+        return new CommentedConfiguration(file, ConfigurationEnvironment.of(gson, arrayCommentStyle));
     }
 
     /**
@@ -201,7 +973,7 @@ public final class CommentedConfiguration {
             @NotNull ArrayCommentStyle arrayCommentStyle
     ) {
         //Creating a blank instance of the config.
-        return new CommentedConfiguration(file, GSON, arrayCommentStyle);
+        return new CommentedConfiguration(file, ConfigurationEnvironment.of(GSON, arrayCommentStyle));
     }
 
     /**
@@ -216,7 +988,7 @@ public final class CommentedConfiguration {
             @NotNull Gson gson
     ) {
         //Creating a blank instance of the config.
-        return new CommentedConfiguration(file, gson, ArrayCommentStyle.COMMENT_FIRST_ELEMENT);
+        return new CommentedConfiguration(file, ConfigurationEnvironment.of(gson, ArrayCommentStyle.COMMENT_FIRST_ELEMENT));
     }
 
     /**
@@ -233,13 +1005,125 @@ public final class CommentedConfiguration {
     /**
      * Retrieves the value for a key and deserializes it to the specified type.
      *
-     * @param key  The key to retrieve the value for.
+     * @param key  The key to retrieve the value for. Subkeys are delimited by '.'
      * @param type The type to deserialize the value into.
      * @param <T>  The type of the returned value.
      * @return The deserialized value.
      */
     public <T> T get(@NotNull String key, @NotNull Type type) {
-        return gson.fromJson(data.getAsJsonObject().get(key), type);
+        ConfigurationSnapshot current = snapshot;
+        if (!cacheViews)
+            return current.get(key, type);
+        JsonElement source = current.resolve(key);
+        Map<Type, View> byType = views.get(key);
+        View view = byType == null ? null : byType.get(type);
+        // unchanged sections are shared between snapshots, so the view is
+        // up to date as long as its source is the same element
+        if (view == null || view.source != source) {
+            view = new View(source, gson.fromJson(source, type));
+            views.computeIfAbsent(key, k -> new ConcurrentHashMap<>()).put(type, view);
+        }
+        @SuppressWarnings("unchecked")
+        T value = (T) view.value;
+        return value;
+    }
+
+    /**
+     * Retrieves the value for a key as an int, without going through Gson.
+     *
+     * @param key The key to retrieve the value for. Subkeys are delimited by '.'
+     * @return The value
+     * @throws NoSuchElementException If there is no value for the key
+     */
+    public int getInt(@NotNull String key) {
+        return snapshot.getInt(key);
+    }
+
+    /**
+     * Retrieves the value for a key as an int, without going through Gson.
+     *
+     * @param key The key to retrieve the value for. Subkeys are delimited by '.'
+     * @param def The value to return if there is no value for the key
+     * @return The value
+     */
+    public int getInt(@NotNull String key, int def) {
+        return snapshot.getInt(key, def);
+    }
+
+    /**
+     * Retrieves the value for a key as a long, without going through Gson.
+     *
+     * @param key The key to retrieve the value for. Subkeys are delimited by '.'
+     * @return The value
+     * @throws NoSuchElementException If there is no value for the key
+     */
+    public long getLong(@NotNull String key) {
+        return snapshot.getLong(key);
+    }
+
+    /**
+     * Retrieves the value for a key as a long, without going through Gson.
+     *
+     * @param key The key to retrieve the value for. Subkeys are delimited by '.'
+     * @param def The value to return if there is no value for the key
+     * @return The value
+     */
+    public long getLong(@NotNull String key, long def) {
+        return snapshot.getLong(key, def);
+    }
+
+    /**
+     * Retrieves the value for a key as a double, without going through Gson.
+     *
+     * @param key The key to retrieve the value for. Subkeys are delimited by '.'
+     * @return The value
+     * @throws NoSuchElementException If there is no value for the key
+     */
+    public double getDouble(@NotNull String key) {
+        return snapshot.getDouble(key);
+    }
+
+    /**
+     * Retrieves the value for a key as a double, without going through Gson.
+     *
+     * @param key The key to retrieve the value for. Subkeys are delimited by '.'
+     * @param def The value to return if there is no value for the key
+     * @return The value
+     */
+    public double getDouble(@NotNull String key, double def) {
+        return snapshot.getDouble(key, def);
+    }
+
+    /**
+     * Retrieves the value for a key as a boolean, without going through Gson.
+     *
+     * @param key The key to retrieve the value for. Subkeys are delimited by '.'
+     * @return The value
+     * @throws NoSuchElementException If there is no value for the key
+     */
+    public boolean getBoolean(@NotNull String key) {
+        return snapshot.getBoolean(key);
+    }
+
+    /**
+     * Retrieves the value for a key as a boolean, without going through Gson.
+     *
+     * @param key The key to retrieve the value for. Subkeys are delimited by '.'
+     * @param def The value to return if there is no value for the key
+     * @return The value
+     */
+    public boolean getBoolean(@NotNull String key, boolean def) {
+        return snapshot.getBoolean(key, def);
+    }
+
+    /**
+     * Retrieves the value for a key as a string, without going through Gson.
+     *
+     * @param key The key to retrieve the value for. Subkeys are delimited by '.'
+     * @return The value, or {@code null} if there is no value for the key
+     */
+    public @Nullable String getString(@NotNull String key) {
+        return snapshot.getString(key);
     }
 
     /**
@@ -250,13 +1134,46 @@ public final class CommentedConfiguration {
      * @return The deserialized data.
      */
     public <T> T getAs(@NotNull Type type) {
-        return gson.fromJson(data, type);
+        ConfigurationSnapshot current = snapshot;
+        if (!cacheViews)
+            return current.getAs(type);
+        JsonElement source = current.getData();
+        View view = rootViews.get(type);
+        if (view == null || view.source != source) {
+            view = new View(source, gson.fromJson(source, type));
+            rootViews.put(type, view);
+        }
+        @SuppressWarnings("unchecked")
+        T value = (T) view.value;
+        return value;
+    }
+
+    /**
+     * Sets whether deserialized values returned by {@link #get(String, Type)} and
+     * {@link #getAs(Type)} should be cached.
+     * <p>
+     * When enabled, repeated calls with the same key and type return the same
+     * instance until the value is changed with {@link #set(String, Object)},
+     * or the data is replaced with {@link #setTo(Object)} or {@link #load()}.
+     * Cached instances are shared between callers, so they should be treated
+     * as read-only.
+     *
+     * @param cacheViews Whether to cache deserialized values
+     */
+    public void setCacheViews(boolean cacheViews) {
+        this.cacheViews = cacheViews;
+        clearViews();
+    }
+
+    private void clearViews() {
+        rootViews.clear();
+        views.clear();
     }
 
     /**
      * Retrieves the value for a key and deserializes it to the specified class.
      *
-     * @param key  The key to retrieve the value for.
+     * @param key  The key to retrieve the value for. Subkeys are delimited by '.'
      * @param type The class to deserialize the value into.
      * @param <T>  The type of the returned value.
      * @return The deserialized value.
@@ -266,43 +1183,71 @@ public final class CommentedConfiguration {
     }
 
     /**
-     * Sets a value for a key using JSON serialization.
+     * Sets a value for a key using JSON serialization. Missing parent
+     * sections are created.
      *
-     * @param key The key to set the value for.
+     * @param key The key to set the value for. Subkeys are delimited by '.'
      * @param v   The value to set.
      */
     public void set(@NotNull String key, @NotNull Object v) {
-        data.getAsJsonObject().add(key, gson.toJsonTree(v));
+        setElement(key, gson.toJsonTree(v));
     }
 
     /**
      * Sets a value for a key using JSON serialization with a specific type.
+     * Missing parent sections are created.
      *
-     * @param key  The key to set the value for.
+     * @param key  The key to set the value for. Subkeys are delimited by '.'
      * @param v    The value to set.
      * @param type The type used for serialization.
      */
     public void set(@NotNull String key, @NotNull Object v, @NotNull Type type) {
-        data.getAsJsonObject().add(key, gson.toJsonTree(v, type));
+        setElement(key, gson.toJsonTree(v, type));
     }
 
     /**
      * Checks if the configuration contains a value for the given path.
      *
-     * @param path The path to check.
+     * @param path The path to check. Subkeys are delimited by '.'
      * @return {@code true} if the path exists, {@code false} otherwise.
      */
     public boolean contains(@NotNull String path) {
-        return data.getAsJsonObject().has(path);
+        return snapshot.contains(path);
+    }
+
+    private void setElement(@NotNull String path, @NotNull JsonElement value) {
+        synchronized (writeLock) {
+            ConfigurationSnapshot current = snapshot;
+            JsonObject root = current.getData().getAsJsonObject();
+            boolean topLevel = path.indexOf('.') == -1 || root.has(path);
+            markDirty(topLevel ? path : current.segments(path)[0]);
+            publish(current.with(path, value));
+        }
+    }
+
+    /**
+     * Publishes new data as the current snapshot
+     *
+     * @param data The new data
+     */
+    private void publish(@NotNull JsonElement data) {
+        snapshot = new ConfigurationSnapshot(data, gson, pathIndex);
     }
 
     /**
      * Replaces the configuration data with the given JSON object.
+     * <p>
+     * The object is copied, so changing it afterwards does not affect
+     * this configuration.
      *
      * @param data The new JSON object to set.
      */
     public void setTo(@NotNull JsonObject data) {
-        this.data = data;
+        synchronized (writeLock) {
+            publish(data.deepCopy());
+            structureChanged = true;
+            clearViews();
+        }
     }
 
     /**
@@ -311,7 +1256,11 @@ public final class CommentedConfiguration {
      * @param data The new JSON object to set.
      */
     public void setTo(@NotNull Object data, Type type) {
-        this.data = gson.toJsonTree(data, type);
+        synchronized (writeLock) {
+            publish(gson.toJsonTree(data, type));
+            structureChanged = true;
+            clearViews();
+        }
     }
 
     /**
@@ -320,22 +1269,60 @@ public final class CommentedConfiguration {
      * @param data The new JSON object to set.
      */
     public void setTo(@NotNull Object data) {
-        this.data = gson.toJsonTree(data);
+        synchronized (writeLock) {
+            publish(gson.toJsonTree(data));
+            structureChanged = true;
+            clearViews();
+        }
+    }
+
+    /**
+     * Returns the file of this configuration
+     *
+     * @return The configuration file
+     */
+    public @NotNull Path getFile() {
+        return file;
+    }
+
+    /**
+     * Returns the environment of this configuration
+     *
+     * @return The configuration environment
+     */
+    public @NotNull ConfigurationEnvironment getEnvironment() {
+        return environment;
     }
 
     /**
      * Retrieves the entire configuration data as a JSON object.
+     * <p>
+     * This is the data of the current {@link #snapshot()}. It must not be
+     * modified directly, as it may be shared with other snapshots and read
+     * by other threads. Use {@link #set(String, Object)} instead.
      *
      * @return The configuration data.
      */
     public JsonElement getData() {
-        return data;
+        return snapshot.getData();
+    }
+
+    /**
+     * Returns the current snapshot of the configuration data. The snapshot
+     * is immutable and does not reflect later changes, so it can be read
+     * from any thread.
+     *
+     * @return The current snapshot
+     */
+    public @NotNull ConfigurationSnapshot snapshot() {
+        return snapshot;
     }
 
-    private void handleEvents(Iterator<Event> eventsI, List<String> lines) {
+    private void handleEvents(Iterator<Event> eventsI, List<String> lines, CommentTree comments) {
         PeekingIterator<Event> events = PeekingIterator.from(eventsI);
-        LinkedList<String> path = new LinkedList<>();
-        Set<String> commentsAdded = new HashSet<>();
+        // the comment nodes of the current path, which are null for sections without comments
+        List<CommentTree> path = new ArrayList<>();
+        Set<CommentTree> commentsAdded = Collections.newSetFromMap(new IdentityHashMap<>());
         boolean expectKey = true;
         boolean lastWasScalar = false;
         int offset = 0;
@@ -347,46 +1334,57 @@ public final class CommentedConfiguration {
             if (event instanceof MappingStartEvent) {
                 expectKey = true;
             } else if (event instanceof MappingEndEvent) {
-                path.pollLast();
+                pollLast(path);
                 expectKey = true;
                 if (events.hasNext()) {
                     Event next = events.peek();
                     if (next instanceof ScalarEvent) {
-                        path.pollLast();
+                        pollLast(path);
                     }
                 }
             } else if (event instanceof ScalarEvent) {
                 if (expectKey) {
                     expectKey = false;
                     if (lastWasScalar)
-                        path.removeLast();
-                    path.add(((ScalarEvent) event).getValue());
+                        pollLast(path);
+                    CommentTree parent = current(path, comments);
+                    path.add(parent == null ? null : parent.child(((ScalarEvent) event).getValue()));
                 } else {
                     expectKey = true;
                 }
             }
             if (event instanceof SequenceStartEvent) {
-                path.add(BlueprintClass.ARRAY_INDEX);
+                CommentTree parent = current(path, comments);
+                path.add(parent == null ? null : parent.elements());
             } else if (event instanceof SequenceEndEvent) {
-                path.pollLast();
+                pollLast(path);
                 expectKey = true;
                 if (events.hasNext()) {
                     Event next = events.peek();
                     if (next instanceof ScalarEvent) {
-                        path.pollLast();
+                        pollLast(path);
                     }
                 }
             }
 
             lastWasScalar = event instanceof ScalarEvent;
-            String commentPath = String.join(".", path);
-            String comment = configComments.get(commentPath);
-            if (comment != null && (commentsAdded.add(commentPath) || arrayCommentStyle == ArrayCommentStyle.COMMENT_ALL_ELEMENTS)) {
+            CommentTree node = current(path, comments);
+            String comment = node == null ? null : node.comment();
+            if (comment != null && (commentsAdded.add(node) || arrayCommentStyle == ArrayCommentStyle.COMMENT_ALL_ELEMENTS)) {
                 lines.add(event.getStartMark().getLine() + (offset++), comment);
             }
         }
     }
 
+    private static @Nullable CommentTree current(@NotNull List<CommentTree> path, @NotNull CommentTree root) {
+        return path.isEmpty() ? root : path.get(path.size() - 1);
+    }
+
+    private static void pollLast(@NotNull List<CommentTree> path) {
+        if (!path.isEmpty())
+            path.remove(path.size() - 1);
+    }
+
     /**
      * Reflective access to the `setProcessComments` method in {@link DumperOptions}.
      */
@@ -409,11 +1407,54 @@ public final class CommentedConfiguration {
      * @param process The value to set for `processComments`.
      */
     @SneakyThrows
-    private static void setProcessComments(@NotNull DumperOptions options, boolean process) {
+    static void setProcessComments(@NotNull DumperOptions options, boolean process) {
         if (SET_PROCESS_COMMENTS != null)
             SET_PROCESS_COMMENTS.invoke(options, process);
     }
 
+    /**
+     * A deserialized value, along with the element it was deserialized from
+     */
+    private static final class View {
+
+        private final @Nullable JsonElement source;
+        private final @Nullable Object value;
+
+        View(@Nullable JsonElement source, @Nullable Object value) {
+            this.source = source;
+            this.value = value;
+        }
+    }
+
+    /**
+     * A snapshot waiting to be written by {@link #saveAsync()}
+     */
+    private static final class PendingSave {
+
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+        private @NotNull JsonElement data;
+        private @NotNull CommentTree comments;
+        private long version;
+
+        PendingSave(@NotNull JsonElement data, @NotNull CommentTree comments, long version) {
+            this.data = data;
+            this.comments = comments;
+            this.version = version;
+        }
+    }
+
+    /**
+     * Lazily creates the thread that writes asynchronous saves
+     */
+    private static final class SaveExecutor {
+
+        private static final ScheduledExecutorService EXECUTOR = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Bubbles Configuration Saver");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
     /**
      * Legally stolen and re-adapted from Guava's PeekingImpl class
      * <p>
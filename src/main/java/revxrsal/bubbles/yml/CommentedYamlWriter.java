@@ -0,0 +1,323 @@
+/*
+ * This file is part of Bubbles, licensed under the MIT License.
+ *
+ *  Copyright (c) Revxrsal <reflxction.github@gmail.com>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+package revxrsal.bubbles.yml;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.yaml.snakeyaml.DumperOptions;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.comments.CommentType;
+import org.yaml.snakeyaml.emitter.Emitter;
+import org.yaml.snakeyaml.events.*;
+import org.yaml.snakeyaml.nodes.Node;
+import org.yaml.snakeyaml.nodes.NodeId;
+import org.yaml.snakeyaml.nodes.ScalarNode;
+import org.yaml.snakeyaml.nodes.Tag;
+import org.yaml.snakeyaml.resolver.Resolver;
+import revxrsal.bubbles.blueprint.CommentTree;
+
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Writes a YAML tree to a {@link Writer} in a single pass, emitting comments
+ * alongside the content they belong to.
+ * <p>
+ * The tree is walked directly and fed to SnakeYAML's {@link Emitter} as events,
+ * with {@link CommentEvent comment events} interleaved before each commented
+ * node. There is no intermediate String, line list or re-parse of the output.
+ * <p>
+ * Comments are looked up by walking a {@link CommentTree} alongside the
+ * content, so no path strings are built for the nodes being written.
+ */
+final class CommentedYamlWriter {
+
+    /**
+     * Used for the implicit tag tuple of scalar events, the same way
+     * SnakeYAML's serializer does it.
+     */
+    private static final Resolver RESOLVER = new Resolver();
+
+    /**
+     * Text of the comment that marks a sequence element whose comments
+     * should be moved above its dash. See {@link LayoutWriter}.
+     */
+    private static final String ELEMENT_MARKER = "\uE000";
+
+    private final @NotNull Yaml yaml;
+    private final @NotNull Emitter emitter;
+    private final @NotNull CommentTree comments;
+    private final @NotNull ArrayCommentStyle arrayCommentStyle;
+    private final Set<CommentTree> commentsAdded = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    /**
+     * Whether nothing has been written yet. Leading blank lines are
+     * dropped so the file does not start with an empty line.
+     */
+    private boolean atStart = true;
+
+    /**
+     * Whether a sequence element was started, and nothing but comments and
+     * collection starts have been written for it yet
+     */
+    private boolean elementStart = false;
+
+    CommentedYamlWriter(
+            @NotNull Yaml yaml,
+            @NotNull DumperOptions options,
+            @NotNull Writer writer,
+            @NotNull CommentTree comments,
+            @NotNull ArrayCommentStyle arrayCommentStyle
+    ) {
+        this.yaml = yaml;
+        this.emitter = new Emitter(new LayoutWriter(writer), options);
+        this.comments = comments;
+        this.arrayCommentStyle = arrayCommentStyle;
+    }
+
+    /**
+     * Writes the given tree as a single YAML document
+     *
+     * @param root The root value. This is a tree of maps, lists and scalars
+     * @throws IOException If the underlying writer fails
+     */
+    public void write(@Nullable Object root) throws IOException {
+        emitter.emit(new StreamStartEvent(null, null));
+        emitter.emit(new DocumentStartEvent(null, null, false, null, null));
+        writeValue(root, comments);
+        emitter.emit(new DocumentEndEvent(null, null, false));
+        emitter.emit(new StreamEndEvent(null, null));
+    }
+
+    /**
+     * Writes a single top-level entry, exactly as it would appear in a
+     * document written by {@link #write(Object)}
+     *
+     * @param key     The entry key
+     * @param value   The entry value
+     * @param atStart Whether the entry is the first thing in the document
+     * @param comment Whether to write the comment of the key itself. Comments
+     *                of the values inside it are written either way.
+     * @throws IOException If the underlying writer fails
+     */
+    public void writeEntry(@NotNull String key, @Nullable Object value, boolean atStart, boolean comment) throws IOException {
+        this.atStart = atStart;
+        emitter.emit(new StreamStartEvent(null, null));
+        emitter.emit(new DocumentStartEvent(null, null, false, null, null));
+        emitter.emit(new MappingStartEvent(null, Tag.MAP.getValue(), true, null, null, DumperOptions.FlowStyle.BLOCK));
+        CommentTree child = comments.child(key);
+        if (comment)
+            writeComment(child);
+        writeScalar(key);
+        writeValue(value, child);
+        emitter.emit(new MappingEndEvent(null, null));
+        emitter.emit(new DocumentEndEvent(null, null, false));
+        emitter.emit(new StreamEndEvent(null, null));
+    }
+
+    /**
+     * Writes the given value
+     *
+     * @param value The value to write
+     * @param node  The comments of the value, or {@code null} if neither the
+     *              value nor anything inside it has comments
+     * @throws IOException If the underlying writer fails
+     */
+    private void writeValue(@Nullable Object value, @Nullable CommentTree node) throws IOException {
+        if (value instanceof Map) {
+            emitter.emit(new MappingStartEvent(null, Tag.MAP.getValue(), true, null, null, DumperOptions.FlowStyle.BLOCK));
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                String key = String.valueOf(entry.getKey());
+                CommentTree child = node == null ? null : node.child(key);
+                writeComment(child);
+                writeScalar(key);
+                writeValue(entry.getValue(), child);
+            }
+            emitter.emit(new MappingEndEvent(null, null));
+        } else if (value instanceof Iterable) {
+            emitter.emit(new SequenceStartEvent(null, Tag.SEQ.getValue(), true, null, null, DumperOptions.FlowStyle.BLOCK));
+            CommentTree elements = node == null ? null : node.elements();
+            for (Object element : (Iterable<?>) value) {
+                elementStart = true;
+                writeComment(elements);
+                writeValue(element, elements);
+            }
+            emitter.emit(new SequenceEndEvent(null, null));
+        } else {
+            writeScalar(value);
+        }
+        atStart = false;
+    }
+
+    private void writeScalar(@Nullable Object value) throws IOException {
+        Node node = yaml.represent(value);
+        if (!(node instanceof ScalarNode))
+            throw new IllegalArgumentException("Don't know how to write " + value + " as a YAML scalar");
+        ScalarNode scalar = (ScalarNode) node;
+        Tag detected = RESOLVER.resolve(NodeId.scalar, scalar.getValue(), true);
+        Tag defaultTag = RESOLVER.resolve(NodeId.scalar, scalar.getValue(), false);
+        ImplicitTuple implicit = new ImplicitTuple(
+                scalar.getTag().equals(detected),
+                scalar.getTag().equals(defaultTag)
+        );
+        emitter.emit(new ScalarEvent(
+                null,
+                scalar.getTag().getValue(),
+                implicit,
+                scalar.getValue(),
+                null,
+                null,
+                scalar.getScalarStyle()
+        ));
+        atStart = false;
+        elementStart = false;
+    }
+
+    private void writeComment(@Nullable CommentTree node) throws IOException {
+        if (node == null || node.comment() == null)
+            return;
+        if (!commentsAdded.add(node) && arrayCommentStyle != ArrayCommentStyle.COMMENT_ALL_ELEMENTS)
+            return;
+        if (elementStart) {
+            // the comments come before the first key or value of the element
+            emitter.emit(new CommentEvent(CommentType.BLOCK, ELEMENT_MARKER, null, null));
+            elementStart = false;
+        }
+        for (String line : node.lines()) {
+            String trimmed = line.trim();
+            if (trimmed.isEmpty()) {
+                if (!atStart)
+                    emitter.emit(new CommentEvent(CommentType.BLANK_LINE, "", null, null));
+                continue;
+            }
+            // indentation is handled by the emitter, so only keep what comes after the '#'
+            String text = trimmed.charAt(0) == '#' ? trimmed.substring(1) : ' ' + trimmed;
+            emitter.emit(new CommentEvent(CommentType.BLOCK, text, null, null));
+            atStart = false;
+        }
+    }
+
+    /**
+     * Fixes the layout of the lines written by the emitter:
+     * <ul>
+     *     <li>The emitter indents blank comment lines like any other line. This
+     *     drops the indentation of lines that contain nothing but spaces, so
+     *     that the output does not end up with trailing whitespace.</li>
+     *     <li>The emitter writes the comments of a sequence element after its
+     *     {@code - } indicator. Elements marked with {@link #ELEMENT_MARKER}
+     *     have their comments moved above the indicator instead, which is
+     *     then joined with the first line of the element.</li>
+     * </ul>
+     */
+    private static final class LayoutWriter extends FilterWriter {
+
+        /**
+         * The current line, without its line break
+         */
+        private final StringBuilder line = new StringBuilder();
+
+        /**
+         * The indentation of the marked sequence indicators that have not
+         * been joined with the content of their element yet, outermost first
+         */
+        private final List<Integer> pendingDashes = new ArrayList<>();
+
+        LayoutWriter(@NotNull Writer out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int c) throws IOException {
+            if (c == '\n')
+                endLine();
+            else
+                line.append((char) c);
+        }
+
+        @Override
+        public void write(char @NotNull [] buf, int off, int len) throws IOException {
+            for (int i = off; i < off + len; i++)
+                write(buf[i]);
+        }
+
+        @Override
+        public void write(@NotNull String str, int off, int len) throws IOException {
+            for (int i = off; i < off + len; i++)
+                write(str.charAt(i));
+        }
+
+        private void endLine() throws IOException {
+            int indent = 0;
+            while (indent < line.length() && line.charAt(indent) == ' ')
+                indent++;
+            String content = line.substring(indent);
+            line.setLength(0);
+            if (content.isEmpty()) {
+                out.write('\n');
+            } else if (isMarkedIndicator(content)) {
+                // nested sequences put all of their indicators on one line
+                for (int i = 0; content.startsWith("- ", i); i += 2)
+                    pendingDashes.add(indent + i);
+            } else if (pendingDashes.isEmpty()) {
+                writeLine(indent, content);
+            } else if (content.charAt(0) == '#') {
+                writeLine(pendingDashes.get(0), content);
+            } else {
+                StringBuilder joined = new StringBuilder();
+                for (int i = 0; i < pendingDashes.size(); i++)
+                    joined.append("- ");
+                writeLine(pendingDashes.get(0), joined.append(content).toString());
+                pendingDashes.clear();
+            }
+        }
+
+        private static boolean isMarkedIndicator(@NotNull String content) {
+            int i = 0;
+            while (content.startsWith("- ", i))
+                i += 2;
+            return i > 0 && content.startsWith("#" + ELEMENT_MARKER, i) && content.length() == i + 2;
+        }
+
+        private void writeLine(int indent, @NotNull String content) throws IOException {
+            for (int i = 0; i < indent; i++)
+                out.write(' ');
+            out.write(content);
+            out.write('\n');
+        }
+
+        @Override
+        public void flush() throws IOException {
+            // the emitter always ends its output with a line break, so anything
+            // left in the line buffer is written along with the next line
+            out.flush();
+        }
+    }
+}
@@ -0,0 +1,340 @@
+/*
+ * This file is part of Bubbles, licensed under the MIT License.
+ *
+ *  Copyright (c) Revxrsal <reflxction.github@gmail.com>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+package revxrsal.bubbles.yml;
+
+import com.google.gson.Gson;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.Unmodifiable;
+
+import java.lang.reflect.Type;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+
+/**
+ * Loads or saves many {@link CommentedConfiguration configurations} in
+ * parallel.
+ * <p>
+ * Each file is parsed and deserialized on its own task, so loading many
+ * files scales with the number of cores instead of paying for every parse
+ * one after another. Failures do not stop the other files from loading:
+ * they are collected and thrown together as a {@link ConfigurationBatchException}
+ * once every file has been processed.
+ * <pre>{@code
+ * ConfigurationBatch batch = ConfigurationBatch.create();
+ * ConfigurationBatch.Entry<Arena> arena = batch.add(Paths.get("arena.yml"), Arena.class);
+ * ConfigurationBatch.Entry<Messages> messages = batch.add(Paths.get("messages.yml"), Messages.class);
+ * batch.load();
+ * Arena loaded = arena.get();
+ * }</pre>
+ */
+public final class ConfigurationBatch {
+
+    private final @NotNull ConfigurationEnvironment environment;
+    private final List<Entry<?>> entries = new ArrayList<>();
+
+    private ConfigurationBatch(@NotNull ConfigurationEnvironment environment) {
+        this.environment = environment;
+    }
+
+    /**
+     * Creates a new, empty batch that creates configurations with the
+     * default {@link Gson} and array comment style.
+     *
+     * @return The new batch
+     */
+    public static @NotNull ConfigurationBatch create() {
+        return create(CommentedConfiguration.GSON, ArrayCommentStyle.COMMENT_FIRST_ELEMENT);
+    }
+
+    /**
+     * Creates a new, empty batch
+     *
+     * @param gson              The GSON instance to deserialize with
+     * @param arrayCommentStyle The array commenting style of the created configurations
+     * @return The new batch
+     */
+    public static @NotNull ConfigurationBatch create(@NotNull Gson gson, @NotNull ArrayCommentStyle arrayCommentStyle) {
+        return create(ConfigurationEnvironment.of(gson, arrayCommentStyle));
+    }
+
+    /**
+     * Creates a new, empty batch that creates configurations in the given
+     * environment
+     *
+     * @param environment The environment of the created configurations
+     * @return The new batch
+     */
+    public static @NotNull ConfigurationBatch create(@NotNull ConfigurationEnvironment environment) {
+        return new ConfigurationBatch(environment);
+    }
+
+    /**
+     * Loads all the given files in parallel and deserializes them to the
+     * given class.
+     *
+     * @param files The files to load
+     * @param type  The class to deserialize every file into
+     * @param <T>   The type of the returned values
+     * @return The deserialized content, keyed by file, in the iteration order of {@code files}
+     * @throws ConfigurationBatchException If any of the files fails to load
+     */
+    public static <T> @NotNull Map<Path, T> loadAll(@NotNull Collection<Path> files, @NotNull Class<T> type) {
+        ConfigurationBatch batch = create();
+        List<Entry<T>> added = new ArrayList<>(files.size());
+        for (Path file : files)
+            added.add(batch.add(file, type));
+        batch.load();
+        Map<Path, T> values = new LinkedHashMap<>();
+        for (Entry<T> entry : added)
+            values.put(entry.getFile(), entry.get());
+        return values;
+    }
+
+    /**
+     * Saves all the given configurations in parallel, using as many threads
+     * as there are available processors.
+     *
+     * @param configurations The configurations to save
+     * @throws ConfigurationBatchException If any of the configurations fails to save
+     */
+    public static void saveAll(@NotNull Collection<CommentedConfiguration> configurations) {
+        withDefaultExecutor(configurations.size(), executor -> saveAll(configurations, executor));
+    }
+
+    /**
+     * Saves all the given configurations in parallel
+     *
+     * @param configurations The configurations to save
+     * @param executor       The executor to save on
+     * @throws ConfigurationBatchException If any of the configurations fails to save
+     */
+    public static void saveAll(@NotNull Collection<CommentedConfiguration> configurations, @NotNull Executor executor) {
+        List<Path> files = new ArrayList<>(configurations.size());
+        List<Runnable> tasks = new ArrayList<>(configurations.size());
+        for (CommentedConfiguration configuration : configurations) {
+            files.add(configuration.getFile());
+            tasks.add(configuration::save);
+        }
+        runAll(files, tasks, executor);
+    }
+
+    /**
+     * Adds a file to be loaded by this batch
+     *
+     * @param file The file to load
+     * @param type The class to deserialize the content into
+     * @param <T>  The content type
+     * @return The entry that holds the result once the batch is loaded
+     */
+    public <T> @NotNull Entry<T> add(@NotNull Path file, @NotNull Class<T> type) {
+        return add(file, (Type) type);
+    }
+
+    /**
+     * Adds a file to be loaded by this batch
+     *
+     * @param file The file to load
+     * @param type The type to deserialize the content into
+     * @param <T>  The content type
+     * @return The entry that holds the result once the batch is loaded
+     */
+    public <T> @NotNull Entry<T> add(@NotNull Path file, @NotNull Type type) {
+        Entry<T> entry = new Entry<>(file, type);
+        entries.add(entry);
+        return entry;
+    }
+
+    /**
+     * Returns the entries added to this batch, in the order they were added
+     *
+     * @return The entries
+     */
+    public @NotNull @Unmodifiable List<Entry<?>> getEntries() {
+        return Collections.unmodifiableList(entries);
+    }
+
+    /**
+     * Loads all the files of this batch in parallel, using as many threads
+     * as there are available processors.
+     *
+     * @throws ConfigurationBatchException If any of the files fails to load.
+     *                                     The other entries are still loaded.
+     */
+    public void load() {
+        withDefaultExecutor(entries.size(), this::load);
+    }
+
+    /**
+     * Loads all the files of this batch in parallel on the given executor.
+     * This blocks until every file has been processed.
+     *
+     * @param executor The executor to parse and deserialize the files on
+     * @throws ConfigurationBatchException If any of the files fails to load.
+     *                                     The other entries are still loaded.
+     */
+    public void load(@NotNull Executor executor) {
+        List<Path> files = new ArrayList<>(entries.size());
+        List<Runnable> tasks = new ArrayList<>(entries.size());
+        for (Entry<?> entry : entries) {
+            files.add(entry.file);
+            tasks.add(entry::load);
+        }
+        runAll(files, tasks, executor);
+    }
+
+    /**
+     * Runs the given tasks on the executor and waits for all of them
+     * to finish, collecting their failures
+     *
+     * @param files    The file of each task
+     * @param tasks    The tasks to run
+     * @param executor The executor to run the tasks on
+     */
+    private static void runAll(@NotNull List<Path> files, @NotNull List<Runnable> tasks, @NotNull Executor executor) {
+        List<CompletableFuture<Void>> futures = new ArrayList<>(tasks.size());
+        for (Runnable task : tasks)
+            futures.add(CompletableFuture.runAsync(task, executor));
+        Map<Path, Throwable> failures = new LinkedHashMap<>();
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                futures.get(i).join();
+            } catch (CompletionException e) {
+                failures.put(files.get(i), e.getCause() == null ? e : e.getCause());
+            }
+        }
+        if (!failures.isEmpty())
+            throw new ConfigurationBatchException(failures);
+    }
+
+    /**
+     * Runs the given action with a pool of at most as many threads as there
+     * are available processors, shutting it down afterwards. Work that fits
+     * in a single thread is run on the calling thread instead.
+     *
+     * @param size   The number of tasks
+     * @param action The action to run
+     */
+    private static void withDefaultExecutor(int size, @NotNull Consumer<Executor> action) {
+        int threads = Math.min(size, Runtime.getRuntime().availableProcessors());
+        if (threads <= 1) {
+            action.accept(Runnable::run);
+            return;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "Bubbles Configuration Loader");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            action.accept(executor);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * A file added to a {@link ConfigurationBatch}, and its result once
+     * the batch is loaded
+     *
+     * @param <T> The content type
+     */
+    public final class Entry<T> {
+
+        private final @NotNull Path file;
+        private final @NotNull Type type;
+        private @Nullable CommentedConfiguration configuration;
+        private @Nullable T value;
+        private @Nullable Throwable failure;
+
+        private Entry(@NotNull Path file, @NotNull Type type) {
+            this.file = file;
+            this.type = type;
+        }
+
+        private void load() {
+            try {
+                CommentedConfiguration configuration = environment.configuration(file);
+                configuration.load();
+                this.value = configuration.getAs(type);
+                this.configuration = configuration;
+                this.failure = null;
+            } catch (Throwable t) {
+                this.failure = t;
+                throw t;
+            }
+        }
+
+        /**
+         * Returns the file of this entry
+         *
+         * @return The file
+         */
+        public @NotNull Path getFile() {
+            return file;
+        }
+
+        /**
+         * Returns the type the content is deserialized into
+         *
+         * @return The type
+         */
+        public @NotNull Type getType() {
+            return type;
+        }
+
+        /**
+         * Returns the loaded configuration, which can be used to modify and
+         * save the file later on
+         *
+         * @return The configuration
+         * @throws IllegalStateException If the entry was not loaded successfully
+         */
+        public @NotNull CommentedConfiguration getConfiguration() {
+            checkLoaded();
+            //noinspection DataFlowIssue
+            return configuration;
+        }
+
+        /**
+         * Returns the deserialized content of the file
+         *
+         * @return The content
+         * @throws IllegalStateException If the entry was not loaded successfully
+         */
+        public T get() {
+            checkLoaded();
+            return value;
+        }
+
+        private void checkLoaded() {
+            if (failure != null)
+                throw new IllegalStateException("Failed to load " + file, failure);
+            if (configuration == null)
+                throw new IllegalStateException("File " + file + " has not been loaded yet");
+        }
+    }
+}
@@ -21,51 +21,39 @@
  *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
  *  SOFTWARE.
  */
-package revxrsal.bubbles.blueprint;
+package revxrsal.bubbles.yml;
 
-import java.lang.reflect.Array;
-import java.util.StringJoiner;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Unmodifiable;
 
-public final class GeneratedToStringBuilder {
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Map;
 
-    private final StringJoiner joiner;
+/**
+ * Thrown when some of the files of a {@link ConfigurationBatch} fail to
+ * load or save. The failure of every file is added as a suppressed exception.
+ */
+public final class ConfigurationBatchException extends RuntimeException {
 
-    public GeneratedToStringBuilder(String name) {
-        joiner = new StringJoiner(", ", name + "(", ")");
-    }
+    private static final long serialVersionUID = 1L;
 
-    public void append(String name, Object value) {
-        if (value == null) {
-            joiner.add(name + "=null");
-        } else {
-            if (value.getClass().isArray()) {
-                joiner.add(name + "=" + toString(value));
-            } else {
-                joiner.add(name + "=" + value);
-            }
-        }
-    }
+    private final @NotNull @Unmodifiable Map<Path, Throwable> failures;
 
-    @Override public String toString() {
-        return joiner.toString();
+    ConfigurationBatchException(@NotNull Map<Path, Throwable> failures) {
+        super(failures.size() + " configuration(s) failed: " + failures.keySet());
+        this.failures = Collections.unmodifiableMap(failures);
+        for (Throwable failure : failures.values())
+            addSuppressed(failure);
     }
 
-    private static String toString(Object a) {
-        if (a == null)
-            return "null";
-
-        int iMax = Array.getLength(a) - 1;
-        if (iMax == -1)
-            return "[]";
-
-        StringBuilder b = new StringBuilder();
-        b.append('[');
-        for (int i = 0; ; i++) {
-            b.append(Array.get(a, i));
-            if (i == iMax)
-                return b.append(']').toString();
-            b.append(", ");
-        }
+    /**
+     * Returns the failure of every file that failed, in the order the files
+     * were added
+     *
+     * @return The failures, keyed by file
+     */
+    public @NotNull @Unmodifiable Map<Path, Throwable> getFailures() {
+        return failures;
     }
-
 }
@@ -0,0 +1,182 @@
+/*
+ * This file is part of Bubbles, licensed under the MIT License.
+ *
+ *  Copyright (c) Revxrsal <reflxction.github@gmail.com>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+package revxrsal.bubbles.yml;
+
+import com.google.gson.Gson;
+import org.jetbrains.annotations.NotNull;
+import org.yaml.snakeyaml.DumperOptions;
+import org.yaml.snakeyaml.Yaml;
+
+import java.nio.file.Path;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * The setup shared by many {@link CommentedConfiguration configurations}: the
+ * {@link Gson} instance, the {@link ArrayCommentStyle}, and the SnakeYAML
+ * options and instances.
+ * <p>
+ * A {@link Yaml} instance carries a representer, a resolver and a constructor,
+ * which are expensive to set up and are not thread-safe. An environment
+ * creates one per thread when it is first used, and all the configurations of
+ * the environment borrow it, so that creating a configuration is cheap.
+ * <p>
+ * Each thread keeps its {@link Yaml} instance until the thread dies, or for
+ * some time after the environment is no longer reachable. Environments are
+ * meant to be few and long-lived rather than created for every file, as each
+ * of them adds an instance to every thread that uses it. The default
+ * environments share a single instance per thread, which threads keep for as
+ * long as they live.
+ * <p>
+ * Environments are thread-safe. Configurations created with the
+ * {@link CommentedConfiguration#from(Path) from} methods share default
+ * environments when they use {@link CommentedConfiguration#GSON}.
+ * <pre>{@code
+ * ConfigurationEnvironment environment = ConfigurationEnvironment.create(gson, ArrayCommentStyle.COMMENT_FIRST_ELEMENT);
+ * for (Path file : arenaFiles) {
+ *     CommentedConfiguration config = environment.configuration(file);
+ *     ...
+ * }
+ * }</pre>
+ */
+public final class ConfigurationEnvironment {
+
+    /**
+     * The environments of {@link CommentedConfiguration#GSON}, by array comment style
+     */
+    private static final Map<ArrayCommentStyle, ConfigurationEnvironment> DEFAULTS = new EnumMap<>(ArrayCommentStyle.class);
+
+    static {
+        // the YAML setup does not depend on the array comment style
+        ThreadLocal<Yaml> yaml = newYaml();
+        for (ArrayCommentStyle style : ArrayCommentStyle.values())
+            DEFAULTS.put(style, new ConfigurationEnvironment(CommentedConfiguration.GSON, style, yaml));
+    }
+
+    private final @NotNull Gson gson;
+    private final @NotNull ArrayCommentStyle arrayCommentStyle;
+
+    /**
+     * Dumper options used when writing comments alongside the content.
+     */
+    private final @NotNull DumperOptions commentOptions;
+
+    /**
+     * The YAML instance of each thread. These are never modified after being
+     * created, but are not safe to use from several threads at once.
+     */
+    private final @NotNull ThreadLocal<Yaml> yaml;
+
+    private ConfigurationEnvironment(@NotNull Gson gson, @NotNull ArrayCommentStyle arrayCommentStyle, @NotNull ThreadLocal<Yaml> yaml) {
+        this.gson = gson;
+        this.arrayCommentStyle = arrayCommentStyle;
+        this.yaml = yaml;
+        this.commentOptions = new DumperOptions();
+        CommentedConfiguration.setProcessComments(commentOptions, true);
+        commentOptions.setDefaultFlowStyle(DumperOptions.FlowStyle.BLOCK);
+    }
+
+    /**
+     * Creates a new environment
+     *
+     * @param gson              The GSON instance to deserialize with
+     * @param arrayCommentStyle The array commenting style. See {@link ArrayCommentStyle}.
+     * @return The new environment
+     */
+    public static @NotNull ConfigurationEnvironment create(@NotNull Gson gson, @NotNull ArrayCommentStyle arrayCommentStyle) {
+        return new ConfigurationEnvironment(gson, arrayCommentStyle, newYaml());
+    }
+
+    /**
+     * Creates a new environment that comments the first element of arrays
+     *
+     * @param gson The GSON instance to deserialize with
+     * @return The new environment
+     */
+    public static @NotNull ConfigurationEnvironment create(@NotNull Gson gson) {
+        return create(gson, ArrayCommentStyle.COMMENT_FIRST_ELEMENT);
+    }
+
+    /**
+     * Returns the environment for the given setup, which is shared if it uses
+     * {@link CommentedConfiguration#GSON}
+     *
+     * @param gson              The GSON instance
+     * @param arrayCommentStyle The array commenting style
+     * @return The environment
+     */
+    static @NotNull ConfigurationEnvironment of(@NotNull Gson gson, @NotNull ArrayCommentStyle arrayCommentStyle) {
+        if (gson == CommentedConfiguration.GSON)
+            return DEFAULTS.get(arrayCommentStyle);
+        return create(gson, arrayCommentStyle);
+    }
+
+    private static @NotNull ThreadLocal<Yaml> newYaml() {
+        DumperOptions options = new DumperOptions();
+        CommentedConfiguration.setProcessComments(options, false);
+        options.setDefaultFlowStyle(DumperOptions.FlowStyle.BLOCK);
+        return ThreadLocal.withInitial(() -> new Yaml(options));
+    }
+
+    /**
+     * Creates a configuration of the given file that uses this environment
+     *
+     * @param file The file of the configuration
+     * @return The new configuration
+     */
+    public @NotNull CommentedConfiguration configuration(@NotNull Path file) {
+        return new CommentedConfiguration(file, this);
+    }
+
+    /**
+     * Returns the GSON instance of this environment
+     *
+     * @return The GSON instance
+     */
+    public @NotNull Gson getGson() {
+        return gson;
+    }
+
+    /**
+     * Returns the array commenting style of this environment
+     *
+     * @return The array commenting style
+     */
+    public @NotNull ArrayCommentStyle getArrayCommentStyle() {
+        return arrayCommentStyle;
+    }
+
+    /**
+     * Returns the YAML instance of the current thread
+     *
+     * @return The YAML instance
+     */
+    @NotNull Yaml yaml() {
+        return yaml.get();
+    }
+
+    @NotNull DumperOptions commentOptions() {
+        return commentOptions;
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * This file is part of Bubbles, licensed under the MIT License.
+ *
+ *  Copyright (c) Revxrsal <reflxction.github@gmail.com>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+package revxrsal.bubbles.yml;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Set;
+
+/**
+ * Listens to configurations being reloaded by a {@link ConfigurationWatcher}
+ */
+@FunctionalInterface
+public interface ConfigurationListener {
+
+    /**
+     * Invoked after the configuration has been reloaded with new content
+     *
+     * @param configuration The reloaded configuration
+     * @param changedKeys   The paths of the values that were changed, added or
+     *                      removed. Subkeys are delimited by '.'
+     */
+    void onReload(@NotNull CommentedConfiguration configuration, @NotNull Set<String> changedKeys);
+
+    /**
+     * Invoked when the configuration file changed but could not be reloaded,
+     * for example because it contains invalid YAML. The configuration keeps
+     * its previous data.
+     *
+     * @param configuration The configuration
+     * @param error         The error
+     */
+    default void onReloadFailed(@NotNull CommentedConfiguration configuration, @NotNull Throwable error) {
+    }
+}
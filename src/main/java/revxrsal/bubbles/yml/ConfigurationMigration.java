@@ -0,0 +1,330 @@
+/*
+ * This file is part of Bubbles, licensed under the MIT License.
+ *
+ *  Copyright (c) Revxrsal <reflxction.github@gmail.com>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+package revxrsal.bubbles.yml;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.Unmodifiable;
+import revxrsal.bubbles.blueprint.BlueprintClass;
+import revxrsal.bubbles.blueprint.BlueprintProperty;
+import revxrsal.bubbles.blueprint.Blueprints;
+import revxrsal.bubbles.blueprint.Classes;
+
+import java.lang.reflect.Type;
+import java.util.*;
+
+/**
+ * Upgrades configuration files to the current schema of a blueprint.
+ * <p>
+ * The loaded data is compared against the properties of the blueprint, and
+ * only what is missing is inserted: properties that are not in the file get
+ * their default value and comments, and renamed properties are moved to their
+ * new key. Top-level keys that did not change are left untouched in the file,
+ * with their formatting and comments, and new top-level keys are appended to
+ * the end of it. Top-level keys that were renamed are rewritten in place of
+ * the old ones, keeping the comments above them.
+ * <p>
+ * Changes are patched into the file one top-level key at a time. When a
+ * nested property is inserted or renamed, the whole top-level section that
+ * contains it is rewritten with the comments of the blueprint, so comments
+ * that were written by hand inside that section, or above it, are lost.
+ * <p>
+ * Renames are versioned. The version of a file is stored under
+ * {@link #versionKey(String) a top-level key}, and only the renames newer than
+ * that version are applied. Once migrated, the file is marked with the latest
+ * version.
+ * <pre>{@code
+ * ConfigurationMigration migration = ConfigurationMigration.of(Arena.class)
+ *         .rename(2, "arena-name", "name")
+ *         .rename(3, "spawn.world", "spawn.world-name");
+ * config.load();
+ * migration.migrate(config);
+ * }</pre>
+ */
+public final class ConfigurationMigration {
+
+    /**
+     * The default key that stores the version of configuration files
+     */
+    public static final String DEFAULT_VERSION_KEY = "config-version";
+
+    private final @NotNull Class<?> type;
+    private final @NotNull BlueprintClass blueprint;
+    private final List<Rename> renames = new ArrayList<>();
+    private @NotNull String versionKey = DEFAULT_VERSION_KEY;
+
+    private ConfigurationMigration(@NotNull Class<?> type) {
+        this.type = type;
+        this.blueprint = Blueprints.from(type);
+    }
+
+    /**
+     * Creates a migration to the schema of the given blueprint
+     *
+     * @param blueprint The blueprint interface
+     * @return The new migration
+     */
+    public static @NotNull ConfigurationMigration of(@NotNull Class<?> blueprint) {
+        return new ConfigurationMigration(blueprint);
+    }
+
+    /**
+     * Moves the value of a key to a new key in files older than the given
+     * version. Nothing is moved if the old key is missing, or if the new key
+     * already exists.
+     *
+     * @param version The version that introduced the rename. This must be positive
+     * @param from    The old key. Subkeys are delimited by '.'
+     * @param to      The new key. Subkeys are delimited by '.'
+     * @return This migration
+     */
+    public @NotNull ConfigurationMigration rename(int version, @NotNull String from, @NotNull String to) {
+        if (version <= 0)
+            throw new IllegalArgumentException("Version must be positive");
+        if (to.startsWith(from + '.') || from.startsWith(to + '.'))
+            throw new IllegalArgumentException("Cannot move '" + from + "' to '" + to + "', as one contains the other");
+        renames.add(new Rename(version, from, to));
+        return this;
+    }
+
+    /**
+     * Sets the top-level key that stores the version of configuration files.
+     * Defaults to {@link #DEFAULT_VERSION_KEY}.
+     *
+     * @param versionKey The version key
+     * @return This migration
+     */
+    public @NotNull ConfigurationMigration versionKey(@NotNull String versionKey) {
+        this.versionKey = versionKey;
+        return this;
+    }
+
+    /**
+     * Returns the latest version of the renames of this migration, or 0 if
+     * there are none
+     *
+     * @return The latest version
+     */
+    public int latestVersion() {
+        int latest = 0;
+        for (Rename rename : renames)
+            latest = Math.max(latest, rename.version);
+        return latest;
+    }
+
+    /**
+     * Migrates the given configuration, and saves the changes with
+     * {@link CommentedConfiguration#saveChanges()}. The configuration should
+     * be loaded beforehand.
+     *
+     * @param config The configuration to migrate
+     * @return The keys that were added or renamed, which is empty if the
+     * configuration is already up to date
+     */
+    public @NotNull @Unmodifiable Set<String> migrate(@NotNull CommentedConfiguration config) {
+        JsonElement current = config.getData();
+        JsonObject data = current != null && current.isJsonObject() ? current.getAsJsonObject().deepCopy() : new JsonObject();
+        Set<String> changed = new LinkedHashSet<>();
+        Set<String> changedKeys = new LinkedHashSet<>();
+        Map<String, String> renamedKeys = new LinkedHashMap<>();
+
+        int version = versionOf(data);
+        List<Rename> pending = new ArrayList<>();
+        for (Rename rename : renames) {
+            if (rename.version > version)
+                pending.add(rename);
+        }
+        pending.sort(Comparator.comparingInt(rename -> rename.version));
+        for (Rename rename : pending) {
+            if (move(data, rename.from, rename.to)) {
+                changed.add(rename.to);
+                changedKeys.add(topLevelKey(rename.from));
+                changedKeys.add(topLevelKey(rename.to));
+                if (rename.from.indexOf('.') == -1 && rename.to.indexOf('.') == -1)
+                    renamedKeys.put(rename.from, rename.to);
+            }
+        }
+
+        Gson gson = config.gson();
+        JsonObject defaults = gson.toJsonTree(blueprint.createDefault(), type).getAsJsonObject();
+        for (BlueprintProperty property : blueprint.properties().values()) {
+            int before = changed.size();
+            insertMissing(gson, data, defaults, property, "", changed);
+            if (changed.size() != before)
+                changedKeys.add(property.key());
+        }
+
+        int latest = latestVersion();
+        if (latest > version) {
+            data.addProperty(versionKey, latest);
+            changedKeys.add(versionKey);
+        }
+        if (changedKeys.isEmpty())
+            return Collections.emptySet();
+        config.migrated(data, changedKeys, renamedKeys, blueprint);
+        config.saveChanges();
+        return Collections.unmodifiableSet(changed);
+    }
+
+    private int versionOf(@NotNull JsonObject data) {
+        JsonElement version = data.get(versionKey);
+        if (version == null || !version.isJsonPrimitive() || !version.getAsJsonPrimitive().isNumber())
+            return 0;
+        return version.getAsInt();
+    }
+
+    /**
+     * Inserts the default value of the given property if it is missing from
+     * the data. Nested blueprints, and collections of them, are filled
+     * recursively.
+     *
+     * @param gson     The Gson instance to serialize defaults with
+     * @param data     The object that should contain the property
+     * @param defaults The default values of the object
+     * @param property The property
+     * @param path     The path of the object
+     * @param changed  The paths that were inserted
+     */
+    private void insertMissing(
+            @NotNull Gson gson,
+            @NotNull JsonObject data,
+            @NotNull JsonObject defaults,
+            @NotNull BlueprintProperty property,
+            @NotNull String path,
+            @NotNull Set<String> changed
+    ) {
+        String key = property.key();
+        String childPath = path.isEmpty() ? key : path + '.' + key;
+        JsonElement value = data.get(key);
+        JsonElement defaultValue = defaults.get(key);
+        if (value == null) {
+            // properties without a default value have nothing to insert
+            if (defaultValue != null && !defaultValue.isJsonNull()) {
+                data.add(key, defaultValue.deepCopy());
+                changed.add(childPath);
+            }
+            return;
+        }
+        Class<?> propClass = property.propClass();
+        if (Blueprints.isBlueprint(propClass)) {
+            if (value.isJsonObject() && defaultValue != null && defaultValue.isJsonObject())
+                insertMissing(gson, value.getAsJsonObject(), defaultValue.getAsJsonObject(), propClass, childPath, changed);
+            return;
+        }
+        Class<?> elementClass = elementClassOf(property);
+        if (elementClass != null && Blueprints.isBlueprint(elementClass) && value.isJsonArray()) {
+            JsonObject elementDefaults = gson.toJsonTree(Blueprints.from(elementClass).createDefault(), elementClass).getAsJsonObject();
+            JsonArray elements = value.getAsJsonArray();
+            for (int i = 0; i < elements.size(); i++) {
+                if (elements.get(i).isJsonObject())
+                    insertMissing(gson, elements.get(i).getAsJsonObject(), elementDefaults, elementClass, childPath + '.' + i, changed);
+            }
+        }
+    }
+
+    private void insertMissing(
+            @NotNull Gson gson,
+            @NotNull JsonObject data,
+            @NotNull JsonObject defaults,
+            @NotNull Class<?> type,
+            @NotNull String path,
+            @NotNull Set<String> changed
+    ) {
+        for (BlueprintProperty property : Blueprints.from(type).properties().values())
+            insertMissing(gson, data, defaults, property, path, changed);
+    }
+
+    private static @Nullable Class<?> elementClassOf(@NotNull BlueprintProperty property) {
+        Class<?> propClass = property.propClass();
+        if (propClass.isArray())
+            return propClass.getComponentType();
+        if (Collection.class.isAssignableFrom(propClass)) {
+            Type elementType = Classes.getFirstGeneric(property.getter().getGenericReturnType(), Object.class);
+            return Classes.getRawType(elementType);
+        }
+        return null;
+    }
+
+    /**
+     * Moves the value at the given path to a new path, creating missing
+     * parent sections
+     *
+     * @param data The data
+     * @param from The path to move from
+     * @param to   The path to move to
+     * @return {@code true} if the value was moved
+     */
+    private static boolean move(@NotNull JsonObject data, @NotNull String from, @NotNull String to) {
+        String[] fromSegments = from.split("\\.");
+        JsonObject fromParent = parentOf(data, fromSegments, false);
+        String fromKey = fromSegments[fromSegments.length - 1];
+        if (fromParent == null || !fromParent.has(fromKey))
+            return false;
+        String[] toSegments = to.split("\\.");
+        String toKey = toSegments[toSegments.length - 1];
+        // this only fails on a parent that is not a section, before creating anything
+        JsonObject toParent = parentOf(data, toSegments, true);
+        if (toParent == null || toParent.has(toKey))
+            return false;
+        toParent.add(toKey, fromParent.remove(fromKey));
+        return true;
+    }
+
+    private static @Nullable JsonObject parentOf(@NotNull JsonObject data, @NotNull String[] segments, boolean create) {
+        JsonObject parent = data;
+        for (int i = 0; i < segments.length - 1; i++) {
+            JsonElement child = parent.get(segments[i]);
+            if (child == null && create) {
+                child = new JsonObject();
+                parent.add(segments[i], child);
+            }
+            if (child == null || !child.isJsonObject())
+                return null;
+            parent = child.getAsJsonObject();
+        }
+        return parent;
+    }
+
+    private static @NotNull String topLevelKey(@NotNull String path) {
+        int dot = path.indexOf('.');
+        return dot == -1 ? path : path.substring(0, dot);
+    }
+
+    private static final class Rename {
+
+        private final int version;
+        private final @NotNull String from;
+        private final @NotNull String to;
+
+        Rename(int version, @NotNull String from, @NotNull String to) {
+            this.version = version;
+            this.from = from;
+            this.to = to;
+        }
+    }
+}
@@ -0,0 +1,317 @@
+/*
+ * This file is part of Bubbles, licensed under the MIT License.
+ *
+ *  Copyright (c) Revxrsal <reflxction.github@gmail.com>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+package revxrsal.bubbles.yml;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.reflect.Type;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.regex.Pattern;
+
+/**
+ * An immutable view of the data of a {@link CommentedConfiguration} at a
+ * point in time.
+ * <p>
+ * The configuration never modifies the data of a snapshot after publishing
+ * it. Changes create a new snapshot instead, which shares all unchanged
+ * sections with the previous one. This allows any number of threads to read
+ * a snapshot while the configuration is being changed or reloaded.
+ * <p>
+ * Obtain the current snapshot with {@link CommentedConfiguration#snapshot()}.
+ */
+public final class ConfigurationSnapshot {
+
+    /**
+     * Pattern for splitting dotted paths.
+     */
+    private static final Pattern DOT = Pattern.compile(".", Pattern.LITERAL);
+
+    /**
+     * The maximum number of paths kept in the path index. Paths looked up
+     * after that are split every time, so that configurations looking up
+     * generated keys do not grow the index forever.
+     */
+    private static final int MAX_INDEXED_PATHS = 1024;
+
+    private final @NotNull JsonElement data;
+    private final @NotNull Gson gson;
+
+    /**
+     * The segments of the dotted paths that were looked up. This is shared
+     * by all the snapshots of a configuration.
+     */
+    private final @NotNull Map<String, String[]> pathIndex;
+
+    ConfigurationSnapshot(@NotNull JsonElement data, @NotNull Gson gson, @NotNull Map<String, String[]> pathIndex) {
+        this.data = data;
+        this.gson = gson;
+        this.pathIndex = pathIndex;
+    }
+
+    /**
+     * Retrieves the value for a key and deserializes it to the specified type.
+     *
+     * @param key  The key to retrieve the value for. Subkeys are delimited by '.'
+     * @param type The type to deserialize the value into.
+     * @param <T>  The type of the returned value.
+     * @return The deserialized value.
+     */
+    public <T> T get(@NotNull String key, @NotNull Type type) {
+        return gson.fromJson(resolve(key), type);
+    }
+
+    /**
+     * Retrieves the value for a key and deserializes it to the specified class.
+     *
+     * @param key  The key to retrieve the value for. Subkeys are delimited by '.'
+     * @param type The class to deserialize the value into.
+     * @param <T>  The type of the returned value.
+     * @return The deserialized value.
+     */
+    public <T> T get(@NotNull String key, @NotNull Class<T> type) {
+        return get(key, (Type) type);
+    }
+
+    /**
+     * Deserializes the entire data to the specified type.
+     *
+     * @param type The type to deserialize the data into.
+     * @param <T>  The type of the returned value.
+     * @return The deserialized data.
+     */
+    public <T> T getAs(@NotNull Type type) {
+        return gson.fromJson(data, type);
+    }
+
+    /**
+     * Retrieves the value for a key as an int, without going through Gson.
+     *
+     * @param key The key to retrieve the value for. Subkeys are delimited by '.'
+     * @return The value
+     * @throws NoSuchElementException If there is no value for the key
+     */
+    public int getInt(@NotNull String key) {
+        return require(key).getAsInt();
+    }
+
+    /**
+     * Retrieves the value for a key as an int, without going through Gson.
+     *
+     * @param key The key to retrieve the value for. Subkeys are delimited by '.'
+     * @param def The value to return if there is no value for the key
+     * @return The value
+     */
+    public int getInt(@NotNull String key, int def) {
+        JsonElement value = resolve(key);
+        return value == null || value.isJsonNull() ? def : value.getAsInt();
+    }
+
+    /**
+     * Retrieves the value for a key as a long, without going through Gson.
+     *
+     * @param key The key to retrieve the value for. Subkeys are delimited by '.'
+     * @return The value
+     * @throws NoSuchElementException If there is no value for the key
+     */
+    public long getLong(@NotNull String key) {
+        return require(key).getAsLong();
+    }
+
+    /**
+     * Retrieves the value for a key as a long, without going through Gson.
+     *
+     * @param key The key to retrieve the value for. Subkeys are delimited by '.'
+     * @param def The value to return if there is no value for the key
+     * @return The value
+     */
+    public long getLong(@NotNull String key, long def) {
+        JsonElement value = resolve(key);
+        return value == null || value.isJsonNull() ? def : value.getAsLong();
+    }
+
+    /**
+     * Retrieves the value for a key as a double, without going through Gson.
+     *
+     * @param key The key to retrieve the value for. Subkeys are delimited by '.'
+     * @return The value
+     * @throws NoSuchElementException If there is no value for the key
+     */
+    public double getDouble(@NotNull String key) {
+        return require(key).getAsDouble();
+    }
+
+    /**
+     * Retrieves the value for a key as a double, without going through Gson.
+     *
+     * @param key The key to retrieve the value for. Subkeys are delimited by '.'
+     * @param def The value to return if there is no value for the key
+     * @return The value
+     */
+    public double getDouble(@NotNull String key, double def) {
+        JsonElement value = resolve(key);
+        return value == null || value.isJsonNull() ? def : value.getAsDouble();
+    }
+
+    /**
+     * Retrieves the value for a key as a boolean, without going through Gson.
+     *
+     * @param key The key to retrieve the value for. Subkeys are delimited by '.'
+     * @return The value
+     * @throws NoSuchElementException If there is no value for the key
+     */
+    public boolean getBoolean(@NotNull String key) {
+        return require(key).getAsBoolean();
+    }
+
+    /**
+     * Retrieves the value for a key as a boolean, without going through Gson.
+     *
+     * @param key The key to retrieve the value for. Subkeys are delimited by '.'
+     * @param def The value to return if there is no value for the key
+     * @return The value
+     */
+    public boolean getBoolean(@NotNull String key, boolean def) {
+        JsonElement value = resolve(key);
+        return value == null || value.isJsonNull() ? def : value.getAsBoolean();
+    }
+
+    /**
+     * Retrieves the value for a key as a string, without going through Gson.
+     *
+     * @param key The key to retrieve the value for. Subkeys are delimited by '.'
+     * @return The value, or {@code null} if there is no value for the key
+     */
+    public @Nullable String getString(@NotNull String key) {
+        JsonElement value = resolve(key);
+        return value == null || value.isJsonNull() ? null : value.getAsString();
+    }
+
+    /**
+     * Checks if this snapshot contains a value for the given path.
+     *
+     * @param path The path to check. Subkeys are delimited by '.'
+     * @return {@code true} if the path exists, {@code false} otherwise.
+     */
+    public boolean contains(@NotNull String path) {
+        return resolve(path) != null;
+    }
+
+    /**
+     * Returns the data of this snapshot. This must not be modified.
+     *
+     * @return The snapshot data
+     */
+    public @NotNull JsonElement getData() {
+        return data;
+    }
+
+    /**
+     * Returns the segments of the given path. The first
+     * {@value #MAX_INDEXED_PATHS} paths are split once and cached, so
+     * repeated lookups of the same path do not allocate.
+     *
+     * @param path The dotted path
+     * @return The path segments
+     */
+    String @NotNull [] segments(@NotNull String path) {
+        String[] segments = pathIndex.get(path);
+        if (segments == null) {
+            segments = DOT.split(path, -1);
+            // the size may overshoot slightly under contention, which is fine
+            if (pathIndex.size() < MAX_INDEXED_PATHS)
+                pathIndex.putIfAbsent(path, segments);
+        }
+        return segments;
+    }
+
+    /**
+     * Finds the element at the given path. A top-level key that contains
+     * dots takes precedence over the nested value with the same path.
+     *
+     * @param path The dotted path
+     * @return The element, or {@code null} if there is none
+     */
+    @Nullable JsonElement resolve(@NotNull String path) {
+        if (!data.isJsonObject())
+            return null;
+        JsonObject root = data.getAsJsonObject();
+        JsonElement exact = root.get(path);
+        if (exact != null || path.indexOf('.') == -1)
+            return exact;
+        JsonElement current = root;
+        for (String segment : segments(path)) {
+            if (!current.isJsonObject())
+                return null;
+            current = current.getAsJsonObject().get(segment);
+            if (current == null)
+                return null;
+        }
+        return current;
+    }
+
+    private @NotNull JsonElement require(@NotNull String path) {
+        JsonElement value = resolve(path);
+        if (value == null || value.isJsonNull())
+            throw new NoSuchElementException("No value for key '" + path + "'");
+        return value;
+    }
+
+    /**
+     * Returns a copy of this snapshot's data with the given value set. Only
+     * the sections along the path are copied, the rest are shared.
+     *
+     * @param path  The dotted path to set
+     * @param value The value to set
+     * @return The new data
+     */
+    @NotNull JsonObject with(@NotNull String path, @NotNull JsonElement value) {
+        JsonObject root = copyOf(data.getAsJsonObject());
+        if (path.indexOf('.') == -1 || root.has(path)) {
+            root.add(path, value);
+            return root;
+        }
+        String[] segments = segments(path);
+        JsonObject parent = root;
+        for (int i = 0; i < segments.length - 1; i++) {
+            JsonElement child = parent.get(segments[i]);
+            JsonObject copy = child != null && child.isJsonObject() ? copyOf(child.getAsJsonObject()) : new JsonObject();
+            parent.add(segments[i], copy);
+            parent = copy;
+        }
+        parent.add(segments[segments.length - 1], value);
+        return root;
+    }
+
+    private static @NotNull JsonObject copyOf(@NotNull JsonObject object) {
+        JsonObject copy = new JsonObject();
+        for (Map.Entry<String, JsonElement> entry : object.entrySet())
+            copy.add(entry.getKey(), entry.getValue());
+        return copy;
+    }
+}
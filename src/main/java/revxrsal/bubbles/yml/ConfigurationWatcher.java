@@ -0,0 +1,374 @@
+/*
+ * This file is part of Bubbles, licensed under the MIT License.
+ *
+ *  Copyright (c) Revxrsal <reflxction.github@gmail.com>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+package revxrsal.bubbles.yml;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import lombok.SneakyThrows;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * Watches the files of {@link CommentedConfiguration configurations} and
+ * reloads them when they change.
+ * <p>
+ * File system events are debounced, so that an editor saving a file in
+ * several steps only causes a single reload. Reloads are skipped when the
+ * content of the file did not actually change, and listeners are only notified
+ * when the reloaded data differs from the current one.
+ * <p>
+ * Files written by the configurations themselves (with {@link CommentedConfiguration#save()}
+ * and the like) are not reloaded, so that reloading them never replaces changes
+ * made in memory after the save.
+ * <p>
+ * Files are read and parsed on the watcher's own thread. Applying the new data
+ * and notifying listeners happens on the callback executor, which allows
+ * moving it to the thread that reads the configurations.
+ */
+public final class ConfigurationWatcher implements Closeable {
+
+    private final @NotNull WatchService watchService;
+    private final @NotNull ScheduledExecutorService scheduler;
+    private final @NotNull Executor callbackExecutor;
+    private final long debounce;
+
+    /**
+     * The watched files, keyed by their absolute path
+     */
+    private final Map<Path, WatchedFile> files = new ConcurrentHashMap<>();
+
+    /**
+     * The directories registered in the watch service
+     */
+    private final Set<Path> directories = ConcurrentHashMap.newKeySet();
+
+    private final Thread pollThread;
+
+    private ConfigurationWatcher(@NotNull WatchService watchService, long debounce, @NotNull Executor callbackExecutor) {
+        this.watchService = watchService;
+        this.debounce = debounce;
+        this.callbackExecutor = callbackExecutor;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Bubbles Configuration Reloader");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.pollThread = new Thread(this::poll, "Bubbles Configuration Watcher");
+        pollThread.setDaemon(true);
+        pollThread.start();
+    }
+
+    /**
+     * Creates a new watcher that debounces events for 100 milliseconds and
+     * notifies listeners on the watcher's thread.
+     *
+     * @return The new watcher
+     */
+    public static @NotNull ConfigurationWatcher create() {
+        return create(100, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Creates a new watcher that notifies listeners on the watcher's thread.
+     *
+     * @param debounce The time to wait for the file to settle before reloading it
+     * @param unit     The debounce time unit
+     * @return The new watcher
+     */
+    public static @NotNull ConfigurationWatcher create(long debounce, @NotNull TimeUnit unit) {
+        return create(debounce, unit, Runnable::run);
+    }
+
+    /**
+     * Creates a new watcher
+     *
+     * @param debounce         The time to wait for the file to settle before reloading it
+     * @param unit             The debounce time unit
+     * @param callbackExecutor The executor that applies reloaded data and
+     *                         notifies listeners
+     * @return The new watcher
+     */
+    @SneakyThrows
+    public static @NotNull ConfigurationWatcher create(
+            long debounce,
+            @NotNull TimeUnit unit,
+            @NotNull Executor callbackExecutor
+    ) {
+        if (debounce < 0)
+            throw new IllegalArgumentException("Debounce time cannot be negative");
+        return new ConfigurationWatcher(FileSystems.getDefault().newWatchService(), unit.toNanos(debounce), callbackExecutor);
+    }
+
+    /**
+     * Watches the file of the given configuration, reloading it when it changes.
+     *
+     * @param configuration The configuration to watch
+     * @param listener      The listener to notify after reloads
+     */
+    @SneakyThrows
+    public void watch(@NotNull CommentedConfiguration configuration, @NotNull ConfigurationListener listener) {
+        Path file = configuration.getFile().toAbsolutePath();
+        WatchedFile watched = files.get(file);
+        if (watched == null) {
+            WatchedFile created = new WatchedFile(configuration, file, hashOf(file));
+            watched = files.putIfAbsent(file, created);
+            if (watched == null) {
+                watched = created;
+                configuration.addWriteListener(created.onWrite);
+            }
+        }
+        if (watched.configuration != configuration)
+            throw new IllegalArgumentException("File " + file + " is already watched by another configuration");
+        watched.listeners.add(listener);
+        Path directory = file.getParent();
+        if (directories.add(directory))
+            directory.register(watchService, ENTRY_CREATE, ENTRY_MODIFY);
+    }
+
+    /**
+     * Watches the file of the given configuration, and passes the reloaded
+     * content, deserialized to the given type, to the listener.
+     *
+     * @param configuration The configuration to watch
+     * @param type          The type to deserialize the content into
+     * @param listener      The listener to pass the reloaded content to
+     * @param <T>           The content type
+     */
+    public <T> void watch(
+            @NotNull CommentedConfiguration configuration,
+            @NotNull Type type,
+            @NotNull Consumer<T> listener
+    ) {
+        watch(configuration, (config, changedKeys) -> listener.accept(config.getAs(type)));
+    }
+
+    /**
+     * Watches the file of the given configuration, and passes the reloaded
+     * content, deserialized to the given class, to the listener.
+     *
+     * @param configuration The configuration to watch
+     * @param type          The class to deserialize the content into
+     * @param listener      The listener to pass the reloaded content to
+     * @param <T>           The content type
+     */
+    public <T> void watch(
+            @NotNull CommentedConfiguration configuration,
+            @NotNull Class<T> type,
+            @NotNull Consumer<T> listener
+    ) {
+        watch(configuration, (Type) type, listener);
+    }
+
+    /**
+     * Stops watching the file of the given configuration
+     *
+     * @param configuration The configuration
+     */
+    public void unwatch(@NotNull CommentedConfiguration configuration) {
+        WatchedFile watched = files.remove(configuration.getFile().toAbsolutePath());
+        if (watched != null) {
+            watched.cancelReload();
+            configuration.removeWriteListener(watched.onWrite);
+        }
+    }
+
+    /**
+     * Stops watching all files and shuts down the watcher threads
+     */
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+        scheduler.shutdownNow();
+        for (WatchedFile watched : files.values())
+            watched.configuration.removeWriteListener(watched.onWrite);
+        files.clear();
+    }
+
+    private void poll() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                Path directory = (Path) key.watchable();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == OVERFLOW) {
+                        for (WatchedFile watched : files.values()) {
+                            if (watched.file.getParent().equals(directory))
+                                scheduleReload(watched);
+                        }
+                        continue;
+                    }
+                    WatchedFile watched = files.get(directory.resolve((Path) event.context()));
+                    if (watched != null)
+                        scheduleReload(watched);
+                }
+                key.reset();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException ignored) {
+            // the watcher was closed
+        }
+    }
+
+    private void scheduleReload(@NotNull WatchedFile watched) {
+        synchronized (watched) {
+            watched.cancelReload();
+            try {
+                watched.pendingReload = scheduler.schedule(() -> reload(watched), debounce, TimeUnit.NANOSECONDS);
+            } catch (RejectedExecutionException ignored) {
+                // the watcher was closed
+            }
+        }
+    }
+
+    private void reload(@NotNull WatchedFile watched) {
+        CommentedConfiguration configuration = watched.configuration;
+        byte[] content;
+        try {
+            content = Files.readAllBytes(watched.file);
+        } catch (NoSuchFileException e) {
+            // the file is being replaced, and another event will follow
+            return;
+        } catch (IOException e) {
+            notifyFailure(watched, e);
+            return;
+        }
+        byte[] hash = hash(content);
+        if (Arrays.equals(hash, watched.hash))
+            return;
+        watched.hash = hash;
+        JsonElement newData;
+        try {
+            newData = configuration.parse(content);
+        } catch (Throwable t) {
+            notifyFailure(watched, t);
+            return;
+        }
+        callbackExecutor.execute(() -> {
+            Set<String> changedKeys = new LinkedHashSet<>();
+            diff("", configuration.getData(), newData, changedKeys);
+            if (changedKeys.isEmpty())
+                return;
+            configuration.reloaded(newData);
+            Set<String> view = Collections.unmodifiableSet(changedKeys);
+            for (ConfigurationListener listener : watched.listeners)
+                listener.onReload(configuration, view);
+        });
+    }
+
+    private void notifyFailure(@NotNull WatchedFile watched, @NotNull Throwable error) {
+        callbackExecutor.execute(() -> {
+            for (ConfigurationListener listener : watched.listeners)
+                listener.onReloadFailed(watched.configuration, error);
+        });
+    }
+
+    /**
+     * Collects the paths of the values that differ between the two elements.
+     * Objects are compared key by key, while arrays and primitives are compared
+     * as a whole.
+     */
+    private static void diff(
+            @NotNull String path,
+            @NotNull JsonElement previous,
+            @NotNull JsonElement current,
+            @NotNull Set<String> changed
+    ) {
+        if (previous.isJsonObject() && current.isJsonObject()) {
+            JsonObject previousObject = previous.getAsJsonObject();
+            JsonObject currentObject = current.getAsJsonObject();
+            for (Map.Entry<String, JsonElement> entry : previousObject.entrySet()) {
+                String childPath = path.isEmpty() ? entry.getKey() : path + '.' + entry.getKey();
+                JsonElement currentValue = currentObject.get(entry.getKey());
+                if (currentValue == null)
+                    changed.add(childPath);
+                else
+                    diff(childPath, entry.getValue(), currentValue, changed);
+            }
+            for (String key : currentObject.keySet()) {
+                if (!previousObject.has(key))
+                    changed.add(path.isEmpty() ? key : path + '.' + key);
+            }
+        } else if (!previous.equals(current)) {
+            changed.add(path);
+        }
+    }
+
+    @SneakyThrows
+    private static byte @Nullable [] hash(byte @Nullable [] content) {
+        if (content == null)
+            return null;
+        return MessageDigest.getInstance("SHA-256").digest(content);
+    }
+
+    @SneakyThrows
+    private static byte @Nullable [] hashOf(@NotNull Path file) {
+        try {
+            return hash(Files.readAllBytes(file));
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    private static final class WatchedFile {
+
+        private final @NotNull CommentedConfiguration configuration;
+        private final @NotNull Path file;
+        private final List<ConfigurationListener> listeners = new CopyOnWriteArrayList<>();
+
+        /**
+         * The hash of the last content that was read by the reloader thread,
+         * or written by the configuration
+         */
+        private volatile byte @Nullable [] hash;
+        private @Nullable ScheduledFuture<?> pendingReload;
+
+        /**
+         * Records the content written by the configuration, so that the
+         * events of its own writes do not cause reloads
+         */
+        private final Consumer<byte[]> onWrite = content -> hash = hash(content);
+
+        WatchedFile(@NotNull CommentedConfiguration configuration, @NotNull Path file, byte @Nullable [] hash) {
+            this.configuration = configuration;
+            this.file = file;
+            this.hash = hash;
+        }
+
+        synchronized void cancelReload() {
+            if (pendingReload != null)
+                pendingReload.cancel(false);
+            pendingReload = null;
+        }
+    }
+}
@@ -8,52 +8,126 @@ import com.google.gson.stream.JsonReader;
 import com.google.gson.stream.JsonToken;
 import com.google.gson.stream.JsonWriter;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
-import java.util.HashMap;
 import java.util.Locale;
-import java.util.Map;
 
 final class EnumTypeAdapterFactory implements TypeAdapterFactory {
 
     private static final EnumTypeAdapterFactory INSTANCE = new EnumTypeAdapterFactory();
 
+    /**
+     * The adapters of every enum type, created once per type. These are
+     * attached to the enum classes themselves, so that they do not keep
+     * the classes (and their class loaders) from being unloaded.
+     */
+    private final ClassValue<EnumAdapter<?>> adapters = new ClassValue<EnumAdapter<?>>() {
+        @Override
+        protected EnumAdapter<?> computeValue(@NotNull Class<?> type) {
+            return new EnumAdapter<>(type);
+        }
+    };
+
     public static @NotNull EnumTypeAdapterFactory get() {
         return INSTANCE;
     }
 
     @Override
     public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
-        Class<T> rawType = (Class<T>) type.getRawType();
+        Class<? super T> rawType = type.getRawType();
         if (!rawType.isEnum()) {
             return null;
         }
-        final Map<String, T> lowercaseToConstant = new HashMap<>();
-        for (T constant : rawType.getEnumConstants()) {
-            lowercaseToConstant.put(toLowercase(constant), constant);
+        @SuppressWarnings("unchecked")
+        TypeAdapter<T> adapter = (TypeAdapter<T>) adapters.get(rawType);
+        return adapter;
+    }
+
+    private static String toLowercase(Object o) {
+        return o.toString().toLowerCase(Locale.US);
+    }
+
+    /**
+     * Hashes the given string the same way for all of its case variants, so
+     * that it can be looked up without lowercasing it first.
+     *
+     * @param value The string to hash
+     * @return The case-insensitive hash
+     */
+    private static int hashIgnoreCase(@NotNull String value) {
+        int hash = 0;
+        for (int i = 0; i < value.length(); i++)
+            hash = 31 * hash + Character.toLowerCase(Character.toUpperCase(value.charAt(i)));
+        return hash ^ (hash >>> 16);
+    }
+
+    private static final class EnumAdapter<T> extends TypeAdapter<T> {
+
+        /**
+         * The lowercase names of the constants, indexed by ordinal
+         */
+        private final String[] names;
+
+        /**
+         * An open-addressing table of the constants, indexed by
+         * the {@link #hashIgnoreCase(String) case-insensitive hash}
+         * of their names
+         */
+        private final Object[] table;
+        private final String[] tableNames;
+        private final int mask;
+
+        EnumAdapter(@NotNull Class<?> type) {
+            Object[] constants = type.getEnumConstants();
+            names = new String[constants.length];
+            int capacity = Integer.highestOneBit(Math.max(constants.length, 1) * 4 - 1) << 1;
+            table = new Object[capacity];
+            tableNames = new String[capacity];
+            mask = capacity - 1;
+            for (Object constant : constants) {
+                String name = toLowercase(constant);
+                names[((Enum<?>) constant).ordinal()] = name;
+                int index = hashIgnoreCase(name) & mask;
+                // later constants win over earlier ones with the same name
+                while (tableNames[index] != null && !tableNames[index].equalsIgnoreCase(name))
+                    index = (index + 1) & mask;
+                table[index] = constant;
+                tableNames[index] = name;
+            }
         }
 
-        return new TypeAdapter<T>() {
-            public void write(JsonWriter out, T value) throws IOException {
-                if (value == null) {
-                    out.nullValue();
-                } else {
-                    out.value(toLowercase(value));
-                }
+        @Override
+        public void write(JsonWriter out, T value) throws IOException {
+            if (value == null) {
+                out.nullValue();
+            } else {
+                out.value(names[((Enum<?>) value).ordinal()]);
             }
+        }
 
-            public T read(JsonReader reader) throws IOException {
-                if (reader.peek() == JsonToken.NULL) {
-                    reader.nextNull();
-                    return null;
-                } else {
-                    return lowercaseToConstant.get(toLowercase(reader.nextString()));
-                }
+        @Override
+        public T read(JsonReader reader) throws IOException {
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+                return null;
+            } else {
+                return lookup(reader.nextString());
             }
-        };
-    }
+        }
 
-    private String toLowercase(Object o) {
-        return o.toString().toLowerCase(Locale.US);
+        private @Nullable T lookup(@NotNull String name) {
+            int index = hashIgnoreCase(name) & mask;
+            String candidate;
+            while ((candidate = tableNames[index]) != null) {
+                if (candidate.equalsIgnoreCase(name)) {
+                    @SuppressWarnings("unchecked")
+                    T constant = (T) table[index];
+                    return constant;
+                }
+                index = (index + 1) & mask;
+            }
+            return null;
+        }
     }
-}
\ No newline at end of file
+}
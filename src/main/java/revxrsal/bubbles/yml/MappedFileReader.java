@@ -0,0 +1,123 @@
+/*
+ * This file is part of Bubbles, licensed under the MIT License.
+ *
+ *  Copyright (c) Revxrsal <reflxction.github@gmail.com>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+package revxrsal.bubbles.yml;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A {@link Reader} that decodes a memory-mapped UTF-8 file straight into
+ * the buffers of its caller.
+ * <p>
+ * The file is never copied onto the heap as bytes, and no intermediate char
+ * buffer is used: each {@link #read(char[], int, int)} decodes directly from
+ * the mapped pages into the given array. Malformed input is reported the same
+ * way {@link java.nio.file.Files#newBufferedReader(Path)} reports it.
+ * <p>
+ * The mapping is released by the garbage collector, not by {@link #close()}.
+ * On some platforms (notably Windows), the file cannot be replaced while it
+ * is still mapped.
+ */
+final class MappedFileReader extends Reader {
+
+    private final MappedByteBuffer buffer;
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPORT)
+            .onUnmappableCharacter(CodingErrorAction.REPORT);
+    private boolean flushed = false;
+
+    /**
+     * A char that was decoded but did not fit in the caller's buffer,
+     * or -1 if there is none
+     */
+    private int pendingChar = -1;
+
+    private MappedFileReader(@NotNull MappedByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    /**
+     * Maps the given file and opens a reader over it
+     *
+     * @param file The file to read
+     * @return The reader
+     * @throws IOException If the file cannot be opened or mapped
+     */
+    public static @NotNull MappedFileReader open(@NotNull Path file) throws IOException {
+        // the mapping stays valid after the channel is closed
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new MappedFileReader(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    @Override
+    public int read(char @NotNull [] cbuf, int off, int len) throws IOException {
+        if (len == 0)
+            return 0;
+        if (pendingChar != -1) {
+            cbuf[off] = (char) pendingChar;
+            pendingChar = -1;
+            return 1;
+        }
+        if (flushed)
+            return -1;
+        if (len == 1) {
+            // a surrogate pair never fits in a single char, so decode two and keep the second one
+            char[] pair = new char[2];
+            int read = read(pair, 0, 2);
+            if (read == 2)
+                pendingChar = pair[1];
+            if (read > 0)
+                cbuf[off] = pair[0];
+            return read == -1 ? -1 : 1;
+        }
+        CharBuffer out = CharBuffer.wrap(cbuf, off, len);
+        CoderResult result = decoder.decode(buffer, out, true);
+        if (result.isUnderflow()) {
+            // all the input was consumed
+            result = decoder.flush(out);
+            if (result.isUnderflow())
+                flushed = true;
+        }
+        if (result.isError())
+            result.throwException();
+        int read = out.position() - off;
+        return read == 0 && flushed ? -1 : read;
+    }
+
+    @Override
+    public void close() {
+    }
+}
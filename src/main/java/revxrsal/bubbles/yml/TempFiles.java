@@ -0,0 +1,97 @@
+/*
+ * This file is part of Bubbles, licensed under the MIT License.
+ *
+ *  Copyright (c) Revxrsal <reflxction.github@gmail.com>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+package revxrsal.bubbles.yml;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+/**
+ * Replaces files by writing a temporary file next to them and moving it
+ * over the original.
+ * <p>
+ * Unlike {@link Files#createTempFile(Path, String, String)}, which restricts
+ * the file to its owner, temporary files are created with the default
+ * permissions, and take the permissions of the file they replace if it
+ * exists. This keeps replaced files readable by whoever could read them
+ * before.
+ */
+final class TempFiles {
+
+    private TempFiles() {
+    }
+
+    /**
+     * Creates an empty temporary file in the directory of the given file
+     *
+     * @param target The file that will be replaced
+     * @return The temporary file
+     * @throws IOException If the file cannot be created
+     */
+    public static @NotNull Path createFor(@NotNull Path target) throws IOException {
+        Path directory = target.toAbsolutePath().getParent();
+        String prefix = target.getFileName().toString() + '.';
+        Path temp;
+        while (true) {
+            try {
+                temp = Files.createFile(directory.resolve(prefix + Long.toUnsignedString(ThreadLocalRandom.current().nextLong()) + ".tmp"));
+                break;
+            } catch (FileAlreadyExistsException ignored) {
+            }
+        }
+        try {
+            if (Files.exists(target) && Files.getFileAttributeView(target, PosixFileAttributeView.class) != null)
+                Files.setPosixFilePermissions(temp, Files.getPosixFilePermissions(target));
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        return temp;
+    }
+
+    /**
+     * Moves the temporary file over the target, atomically if the file
+     * system supports it
+     *
+     * @param temp   The temporary file
+     * @param target The file to replace
+     * @throws IOException If the file cannot be moved
+     */
+    public static void replace(@NotNull Path temp, @NotNull Path target) throws IOException {
+        try {
+            Files.move(temp, target, ATOMIC_MOVE, REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, REPLACE_EXISTING);
+        }
+    }
+}
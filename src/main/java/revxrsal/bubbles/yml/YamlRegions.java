@@ -0,0 +1,290 @@
+/*
+ * This file is part of Bubbles, licensed under the MIT License.
+ *
+ *  Copyright (c) Revxrsal <reflxction.github@gmail.com>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+package revxrsal.bubbles.yml;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.error.Mark;
+import org.yaml.snakeyaml.events.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The byte ranges of the top-level entries of a YAML file.
+ * <p>
+ * The region of an entry starts right after the value of the previous entry,
+ * so it includes the comments and blank lines that precede the key, and ends
+ * right after its own value. Regions are contiguous, and the last one extends
+ * to the end of the file.
+ * <p>
+ * Comments at the start of the file that are separated from the first key by
+ * a blank line are the header of the file. The header, including the blank
+ * line, is not part of any region.
+ */
+final class YamlRegions {
+
+    /**
+     * The {@code [start, end, keyStart]} ranges of the keys, where
+     * {@code keyStart} is the start of the line of the key itself
+     */
+    private final Map<String, long[]> regions;
+
+    /**
+     * The end of the header of the file, or -1 if the file starts with
+     * comments that are not separated from the first region
+     */
+    private long headerEnd;
+
+    private YamlRegions(@NotNull Map<String, long[]> regions, long headerEnd) {
+        this.regions = regions;
+        this.headerEnd = headerEnd;
+    }
+
+    /**
+     * Returns the byte range of the given top-level key
+     *
+     * @param key The key
+     * @return The {@code [start, end)} range, or {@code null} if the key is not in the file
+     */
+    public long @Nullable [] regionOf(@NotNull String key) {
+        return regions.get(key);
+    }
+
+    /**
+     * Tests whether the region of the given key starts the file or directly
+     * follows its header, in which case its content should not start with a
+     * blank line
+     *
+     * @param key The key
+     * @return Whether the region is at the start of the file
+     */
+    public boolean isAtStart(@NotNull String key) {
+        long start = regions.get(key)[0];
+        return start == 0 || start == headerEnd;
+    }
+
+    /**
+     * Returns where the content of the given key starts being rewritten when
+     * the key changes. The comments above the key are only rewritten if the
+     * key has comments of its own to replace them with.
+     *
+     * @param key         The key
+     * @param hasComments Whether the key has comments to write
+     * @return The start of the rewritten content
+     */
+    public long rewriteStart(@NotNull String key, boolean hasComments) {
+        long[] region = regions.get(key);
+        return hasComments ? region[0] : region[2];
+    }
+
+    /**
+     * Tests whether nothing but the header would be left in the file once
+     * the given number of regions are removed from it
+     *
+     * @param size    The size of the file after removing the regions
+     * @param removed The number of removed regions
+     * @return Whether only the header is left
+     */
+    public boolean isHeaderOnly(long size, int removed) {
+        return removed == regions.size() && (size == 0 || size == headerEnd);
+    }
+
+    /**
+     * Updates the regions after the content of the given key changed its length
+     *
+     * @param key      The key whose content changed
+     * @param delta    The change in length, in bytes
+     * @param comments Whether the comments above the key were rewritten as well
+     */
+    public void resize(@NotNull String key, long delta, boolean comments) {
+        long[] changed = regions.get(key);
+        long start = changed[0];
+        for (long[] region : regions.values()) {
+            if (region[0] > start) {
+                region[0] += delta;
+                region[1] += delta;
+                region[2] += delta;
+            }
+        }
+        changed[1] += delta;
+        // comments written over the old ones are ours, so they belong to the key
+        if (comments)
+            changed[2] = start;
+    }
+
+    /**
+     * Excludes the comments above the given key from its region if it is the
+     * first thing in the file, so that removing the key does not remove them.
+     * These may be the header of the file rather than the comments of the key.
+     *
+     * @param key The key
+     */
+    public void keepLeadingComments(@NotNull String key) {
+        long[] region = regions.get(key);
+        if (region[0] == 0 && region[2] > 0) {
+            region[0] = region[2];
+            // the comments stay, so whatever follows them needs a blank line
+            headerEnd = -1;
+        }
+    }
+
+    /**
+     * Removes the region of the given key, after its content was removed
+     * from the file
+     *
+     * @param key The removed key
+     */
+    public void remove(@NotNull String key) {
+        long[] removed = regions.get(key);
+        resize(key, removed[0] - removed[1], true);
+        regions.remove(key);
+    }
+
+    /**
+     * Moves the region of a key to a new key, which takes its place in the file
+     *
+     * @param from The old key
+     * @param to   The new key, which must not be in the file
+     */
+    public void rename(@NotNull String from, @NotNull String to) {
+        regions.put(to, regions.remove(from));
+    }
+
+    /**
+     * Adds the region of a key that was appended to the end of the file
+     *
+     * @param key   The appended key
+     * @param start The start of the region
+     * @param end   The end of the region, which is the new end of the file
+     */
+    public void append(@NotNull String key, long start, long end) {
+        regions.put(key, new long[]{start, end, start});
+    }
+
+    /**
+     * Computes the regions of the top-level entries in the given content
+     *
+     * @param yaml    The YAML instance to parse with
+     * @param content The file content
+     * @return The regions, or {@code null} if the root is not a mapping
+     */
+    public static @Nullable YamlRegions scan(@NotNull Yaml yaml, byte[] content) {
+        List<Long> lineStarts = new ArrayList<>();
+        lineStarts.add(0L);
+        for (int i = 0; i < content.length; i++) {
+            if (content[i] == '\n')
+                lineStarts.add((long) i + 1);
+        }
+
+        Map<String, long[]> regions = new LinkedHashMap<>();
+        Iterator<Event> events = yaml.parse(new InputStreamReader(new ByteArrayInputStream(content), StandardCharsets.UTF_8)).iterator();
+        int depth = 0;
+        boolean expectKey = false;
+        long regionStart = 0;
+        long headerEnd = 0;
+        long[] current = null;
+        Mark lastEnd = null;
+        // whether each open collection is in flow style
+        List<Boolean> flow = new ArrayList<>();
+        while (events.hasNext()) {
+            Event event = events.next();
+            if (event instanceof CollectionStartEvent) {
+                if (depth == 0 && !(event instanceof MappingStartEvent))
+                    return null;
+                if (depth == 0) {
+                    depth++;
+                    expectKey = true;
+                    flow.add(((CollectionStartEvent) event).isFlow());
+                    continue;
+                }
+                if (depth == 1 && expectKey)
+                    return null;
+                depth++;
+                flow.add(((CollectionStartEvent) event).isFlow());
+                if (((CollectionStartEvent) event).isFlow())
+                    lastEnd = event.getEndMark();
+            } else if (event instanceof CollectionEndEvent) {
+                depth--;
+                boolean isFlow = flow.remove(flow.size() - 1);
+                if (depth == 0)
+                    break;
+                if (isFlow)
+                    lastEnd = event.getEndMark();
+                if (depth == 1)
+                    expectKey = true;
+            } else if (event instanceof ScalarEvent || event instanceof AliasEvent) {
+                if (depth == 0)
+                    return null;
+                if (depth == 1 && expectKey) {
+                    long keyStart = lineStarts.get(event.getStartMark().getLine());
+                    if (current != null) {
+                        regionStart = lineStartAfter(lineStarts, lastEnd, content.length);
+                        current[1] = regionStart;
+                    } else {
+                        regionStart = headerEnd = headerEnd(content, lineStarts, event.getStartMark().getLine());
+                    }
+                    current = new long[]{regionStart, content.length, keyStart};
+                    if (!(event instanceof ScalarEvent) || regions.put(((ScalarEvent) event).getValue(), current) != null)
+                        return null;
+                    expectKey = false;
+                } else {
+                    lastEnd = event.getEndMark();
+                    if (depth == 1)
+                        expectKey = true;
+                }
+            }
+        }
+        return new YamlRegions(regions, headerEnd);
+    }
+
+    /**
+     * Finds the end of the header of the file, which is the end of the last
+     * blank line before the first key, or 0 if there is none
+     */
+    private static long headerEnd(byte @NotNull [] content, @NotNull List<Long> lineStarts, int keyLine) {
+        for (int line = keyLine - 1; line >= 0; line--) {
+            long start = lineStarts.get(line);
+            long end = lineStarts.get(line + 1);
+            boolean blank = true;
+            for (long i = start; i < end && blank; i++)
+                blank = Character.isWhitespace(content[(int) i]);
+            if (blank)
+                return end;
+        }
+        return 0;
+    }
+
+    private static long lineStartAfter(@NotNull List<Long> lineStarts, @NotNull Mark mark, long length) {
+        int line = mark.getColumn() == 0 ? mark.getLine() : mark.getLine() + 1;
+        return line < lineStarts.size() ? lineStarts.get(line) : length;
+    }
+}
@@ -0,0 +1,528 @@
+/*
+ * This file is part of Bubbles, licensed under the MIT License.
+ *
+ *  Copyright (c) Revxrsal <reflxction.github@gmail.com>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+package revxrsal.bubbles.yml;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.yaml.snakeyaml.DumperOptions;
+import org.yaml.snakeyaml.error.YAMLException;
+import org.yaml.snakeyaml.events.*;
+import org.yaml.snakeyaml.nodes.NodeId;
+import org.yaml.snakeyaml.nodes.Tag;
+import org.yaml.snakeyaml.resolver.Resolver;
+
+import java.io.Reader;
+import java.math.BigInteger;
+import java.util.*;
+
+/**
+ * A {@link Reader} that translates SnakeYAML parser events into JSON text
+ * on the fly.
+ * <p>
+ * This allows Gson's streaming {@link com.google.gson.stream.JsonReader} to read
+ * YAML content directly into the target objects, without building the
+ * intermediate {@code Map} and {@link com.google.gson.JsonElement} trees. Only
+ * the text of the event currently being read is kept in memory.
+ * <p>
+ * Scalars are typed the same way SnakeYAML resolves them, so that numbers,
+ * booleans and nulls end up as their JSON counterparts. Keys are written the
+ * way Gson writes the keys of the map SnakeYAML would construct, so complex
+ * keys end up as the string form of the constructed list or map. Anchors and
+ * aliases are supported by replaying the events of the anchored node, and
+ * merge keys ({@code <<}) are flattened the same way SnakeYAML flattens them.
+ * <p>
+ * Timestamps, binary values and values with custom tags are read as strings,
+ * rather than constructed into dedicated Java objects or rejected.
+ */
+final class YamlToJsonReader extends Reader {
+
+    /**
+     * Resolves the tags of plain scalars
+     */
+    private static final Resolver RESOLVER = new Resolver();
+
+    private static final BigInteger SIXTY = BigInteger.valueOf(60);
+
+    private final @NotNull Iterator<Event> events;
+
+    /**
+     * Events of aliased nodes, waiting to be replayed
+     */
+    private final Deque<Event> replay = new ArrayDeque<>();
+
+    /**
+     * Events of mappings that were flattened because of merge keys. These
+     * were already recorded when they were first read, so unlike {@link #replay},
+     * they are not recorded again.
+     */
+    private final Deque<Event> merged = new ArrayDeque<>();
+
+    /**
+     * The open mappings and sequences, innermost last
+     */
+    private final List<Frame> frames = new ArrayList<>();
+
+    /**
+     * The events of every completed anchor
+     */
+    private final Map<String, List<Event>> anchors = new HashMap<>();
+
+    /**
+     * Anchors that are still being recorded
+     */
+    private final List<Recording> recordings = new ArrayList<>();
+
+    /**
+     * The JSON text of the last processed events
+     */
+    private final StringBuilder buffer = new StringBuilder();
+    private int position = 0;
+    private boolean wroteValue = false;
+    private boolean finished = false;
+
+    YamlToJsonReader(@NotNull Iterator<Event> events) {
+        this.events = events;
+    }
+
+    @Override
+    public int read(char @NotNull [] cbuf, int off, int len) {
+        if (len == 0)
+            return 0;
+        while (position == buffer.length()) {
+            if (finished)
+                return -1;
+            buffer.setLength(0);
+            position = 0;
+            process(nextEvent());
+        }
+        int count = Math.min(len, buffer.length() - position);
+        buffer.getChars(position, position + count, cbuf, off);
+        position += count;
+        return count;
+    }
+
+    private @NotNull Event nextEvent() {
+        if (!merged.isEmpty())
+            return merged.poll();
+        Event event = replay.isEmpty() ? events.next() : replay.poll();
+        record(event);
+        return event;
+    }
+
+    /**
+     * Returns the next event, replaying the events of aliases in their place
+     */
+    private @NotNull Event nextNodeEvent() {
+        Event event = nextEvent();
+        while (event instanceof AliasEvent) {
+            replayAlias((AliasEvent) event);
+            event = nextEvent();
+        }
+        return event;
+    }
+
+    private void replayAlias(@NotNull AliasEvent alias) {
+        List<Event> anchored = anchors.get(alias.getAnchor());
+        if (anchored == null)
+            throw new IllegalStateException("Found undefined alias: " + alias.getAnchor());
+        for (int i = anchored.size() - 1; i >= 0; i--)
+            replay.addFirst(anchored.get(i));
+    }
+
+    private void process(@NotNull Event event) {
+        Frame top = top();
+        if (top != null && top.mapping && top.expectKey && !(event instanceof MappingEndEvent || event instanceof AliasEvent)) {
+            if (isMergeKey(event))
+                merge(top);
+            else
+                appendKey(top, String.valueOf(construct(event)));
+        } else if (event instanceof MappingStartEvent) {
+            beforeNode();
+            buffer.append('{');
+            frames.add(new Frame(true));
+        } else if (event instanceof SequenceStartEvent) {
+            beforeNode();
+            buffer.append('[');
+            frames.add(new Frame(false));
+        } else if (event instanceof MappingEndEvent) {
+            frames.remove(frames.size() - 1);
+            buffer.append('}');
+            afterValue();
+        } else if (event instanceof SequenceEndEvent) {
+            frames.remove(frames.size() - 1);
+            buffer.append(']');
+            afterValue();
+        } else if (event instanceof ScalarEvent) {
+            beforeNode();
+            appendScalar((ScalarEvent) event);
+            afterValue();
+        } else if (event instanceof AliasEvent) {
+            replayAlias((AliasEvent) event);
+        } else if (event instanceof StreamEndEvent) {
+            if (!wroteValue)
+                buffer.append("null");
+            finished = true;
+        }
+    }
+
+    private void beforeNode() {
+        Frame top = top();
+        if (top == null || top.mapping)
+            return;
+        if (!top.first)
+            buffer.append(',');
+        top.first = false;
+    }
+
+    private void appendKey(@NotNull Frame frame, @NotNull String key) {
+        if (!frame.first)
+            buffer.append(',');
+        frame.first = false;
+        frame.expectKey = false;
+        frame.keys.add(key);
+        appendString(key);
+        buffer.append(':');
+    }
+
+    private static boolean isMergeKey(@NotNull Event event) {
+        if (!(event instanceof ScalarEvent))
+            return false;
+        ScalarEvent scalar = (ScalarEvent) event;
+        return tagOf(scalar).equals(Tag.MERGE);
+    }
+
+    /**
+     * Flattens the rest of the given mapping, which has just reached a merge
+     * key. Like SnakeYAML, the keys of the mapping take precedence over the
+     * merged ones, and merged keys keep the position of the merge key.
+     *
+     * @param frame The mapping
+     */
+    private void merge(@NotNull Frame frame) {
+        Map<String, List<Event>> entries = new LinkedHashMap<>();
+        mergeInto(entries, nextNodeEvent(), frame.keys);
+        readEntries(entries, frame.keys);
+        List<Event> flattened = new ArrayList<>();
+        for (Map.Entry<String, List<Event>> entry : entries.entrySet()) {
+            flattened.add(new ScalarEvent(null, null, new ImplicitTuple(false, true), entry.getKey(),
+                    null, null, DumperOptions.ScalarStyle.DOUBLE_QUOTED));
+            flattened.addAll(entry.getValue());
+        }
+        flattened.add(new MappingEndEvent(null, null));
+        for (int i = flattened.size() - 1; i >= 0; i--)
+            merged.addFirst(flattened.get(i));
+    }
+
+    /**
+     * Reads the remaining entries of a mapping, up to and including its end
+     *
+     * @param entries The entries to add to. Keys of the mapping replace them.
+     * @param written Keys that were already written, which merged keys do not replace
+     */
+    private void readEntries(@NotNull Map<String, List<Event>> entries, @NotNull Set<String> written) {
+        Event key;
+        while (!((key = nextNodeEvent()) instanceof MappingEndEvent)) {
+            if (isMergeKey(key))
+                mergeInto(entries, nextNodeEvent(), written);
+            else
+                entries.put(String.valueOf(construct(key)), readNode());
+        }
+    }
+
+    /**
+     * Adds the entries of the value of a merge key, which is either a
+     * mapping or a sequence of mappings, where earlier mappings take
+     * precedence
+     */
+    private void mergeInto(@NotNull Map<String, List<Event>> entries, @NotNull Event value, @NotNull Set<String> written) {
+        if (value instanceof MappingStartEvent) {
+            Map<String, List<Event>> mapping = new LinkedHashMap<>();
+            readEntries(mapping, Collections.emptySet());
+            for (Map.Entry<String, List<Event>> entry : mapping.entrySet()) {
+                if (!written.contains(entry.getKey()))
+                    entries.putIfAbsent(entry.getKey(), entry.getValue());
+            }
+        } else if (value instanceof SequenceStartEvent) {
+            Event element;
+            while (!((element = nextNodeEvent()) instanceof SequenceEndEvent)) {
+                if (!(element instanceof MappingStartEvent))
+                    throw new IllegalStateException("Expected a mapping for merging, but found " + element.getEventId() + " " + element.getStartMark());
+                mergeInto(entries, element, written);
+            }
+        } else {
+            throw new IllegalStateException("Expected a mapping or a list of mappings for merging, but found " + value.getEventId() + " " + value.getStartMark());
+        }
+    }
+
+    /**
+     * Reads the events of the next node, with the events of aliases in their place
+     */
+    private @NotNull List<Event> readNode() {
+        List<Event> node = new ArrayList<>();
+        Event event = nextNodeEvent();
+        node.add(event);
+        int depth = event instanceof CollectionStartEvent ? 1 : 0;
+        while (depth > 0) {
+            event = nextNodeEvent();
+            node.add(event);
+            if (event instanceof CollectionStartEvent)
+                depth++;
+            else if (event instanceof CollectionEndEvent)
+                depth--;
+        }
+        return node;
+    }
+
+    /**
+     * Constructs the node that starts with the given event into the object
+     * SnakeYAML would construct, which is needed for keys
+     */
+    private @Nullable Object construct(@NotNull Event event) {
+        if (event instanceof ScalarEvent)
+            return valueOf((ScalarEvent) event);
+        if (event instanceof SequenceStartEvent) {
+            List<Object> list = new ArrayList<>();
+            while (!((event = nextNodeEvent()) instanceof SequenceEndEvent))
+                list.add(construct(event));
+            return list;
+        }
+        if (event instanceof MappingStartEvent) {
+            Map<Object, Object> map = new LinkedHashMap<>();
+            while (!((event = nextNodeEvent()) instanceof MappingEndEvent))
+                map.put(construct(event), construct(nextNodeEvent()));
+            return map;
+        }
+        throw new IllegalStateException("Expected a node, but found " + event.getEventId() + " " + event.getStartMark());
+    }
+
+    private void afterValue() {
+        Frame top = top();
+        if (top == null) {
+            wroteValue = true;
+            finish();
+        } else if (top.mapping) {
+            top.expectKey = true;
+        }
+    }
+
+    /**
+     * Makes sure nothing follows the document that was just read. This is
+     * checked right away, as Gson stops reading once it has the value.
+     */
+    private void finish() {
+        Event event = events.next();
+        if (event instanceof DocumentEndEvent)
+            event = events.next();
+        // like Yaml.load(), refuse to silently ignore other documents
+        if (!(event instanceof StreamEndEvent))
+            throw new YAMLException("expected a single document in the stream, but found another document" + event.getStartMark());
+        finished = true;
+    }
+
+    private Frame top() {
+        return frames.isEmpty() ? null : frames.get(frames.size() - 1);
+    }
+
+    private void record(@NotNull Event event) {
+        // aliases are recorded through the events they replay
+        if (event instanceof AliasEvent)
+            return;
+        if (event instanceof NodeEvent) {
+            String anchor = ((NodeEvent) event).getAnchor();
+            if (anchor != null)
+                recordings.add(new Recording(anchor));
+        }
+        for (Iterator<Recording> iterator = recordings.iterator(); iterator.hasNext(); ) {
+            Recording recording = iterator.next();
+            recording.events.add(event);
+            if (event instanceof CollectionStartEvent)
+                recording.depth++;
+            else if (event instanceof CollectionEndEvent)
+                recording.depth--;
+            if (recording.depth == 0) {
+                anchors.put(recording.anchor, recording.events);
+                iterator.remove();
+            }
+        }
+    }
+
+    private void appendScalar(@NotNull ScalarEvent scalar) {
+        Object value = valueOf(scalar);
+        if (value instanceof String)
+            appendString((String) value);
+        else
+            // nulls, booleans and numbers are written as they are
+            buffer.append(value);
+    }
+
+    private static @NotNull Tag tagOf(@NotNull ScalarEvent scalar) {
+        if (scalar.getTag() != null && !scalar.getTag().equals("!"))
+            return new Tag(scalar.getTag());
+        if (scalar.getImplicit().canOmitTagInPlainScalar() && scalar.getScalarStyle() == DumperOptions.ScalarStyle.PLAIN)
+            return RESOLVER.resolve(NodeId.scalar, scalar.getValue(), true);
+        return Tag.STR;
+    }
+
+    /**
+     * Returns the value of the given scalar, the same way SnakeYAML constructs it
+     *
+     * @param scalar The scalar
+     * @return The value, which is {@code null}, a {@link Boolean}, a {@link BigInteger},
+     * a {@link Double} or a {@link String}
+     */
+    private static @Nullable Object valueOf(@NotNull ScalarEvent scalar) {
+        String value = scalar.getValue();
+        Tag tag = tagOf(scalar);
+        if (tag.equals(Tag.NULL))
+            return null;
+        if (tag.equals(Tag.BOOL)) {
+            String lower = value.toLowerCase(Locale.ROOT);
+            return lower.equals("true") || lower.equals("yes") || lower.equals("on");
+        }
+        if (tag.equals(Tag.INT)) {
+            BigInteger number = parseInt(value);
+            return number == null ? value : number;
+        }
+        if (tag.equals(Tag.FLOAT)) {
+            Double number = parseFloat(value);
+            return number == null ? value : number;
+        }
+        return value;
+    }
+
+    private static @Nullable BigInteger parseInt(@NotNull String value) {
+        String v = value.replace("_", "");
+        boolean negative = false;
+        if (v.startsWith("-") || v.startsWith("+")) {
+            negative = v.charAt(0) == '-';
+            v = v.substring(1);
+        }
+        try {
+            BigInteger number;
+            if (v.startsWith("0x")) {
+                number = new BigInteger(v.substring(2), 16);
+            } else if (v.startsWith("0b")) {
+                number = new BigInteger(v.substring(2), 2);
+            } else if (v.indexOf(':') != -1) {
+                // base 60, such as 190:20:30
+                number = BigInteger.ZERO;
+                for (String digits : v.split(":"))
+                    number = number.multiply(SIXTY).add(new BigInteger(digits));
+            } else if (v.length() > 1 && v.startsWith("0")) {
+                number = new BigInteger(v.substring(1), 8);
+            } else {
+                number = new BigInteger(v);
+            }
+            return negative ? number.negate() : number;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static @Nullable Double parseFloat(@NotNull String value) {
+        String v = value.replace("_", "").toLowerCase(Locale.ROOT);
+        if (v.equals(".nan"))
+            return Double.NaN;
+        double sign = 1;
+        if (v.startsWith("-") || v.startsWith("+")) {
+            sign = v.charAt(0) == '-' ? -1 : 1;
+            v = v.substring(1);
+        }
+        if (v.equals(".inf"))
+            return sign * Double.POSITIVE_INFINITY;
+        try {
+            if (v.indexOf(':') == -1)
+                return sign * Double.parseDouble(v);
+            // base 60, such as 190:20:30.15
+            double number = 0;
+            for (String digits : v.split(":"))
+                number = number * 60 + Double.parseDouble(digits);
+            return sign * number;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private void appendString(@NotNull String value) {
+        buffer.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    buffer.append("\\\"");
+                    break;
+                case '\\':
+                    buffer.append("\\\\");
+                    break;
+                case '\n':
+                    buffer.append("\\n");
+                    break;
+                case '\r':
+                    buffer.append("\\r");
+                    break;
+                case '\t':
+                    buffer.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20)
+                        buffer.append(String.format("\\u%04x", (int) c));
+                    else
+                        buffer.append(c);
+            }
+        }
+        buffer.append('"');
+    }
+
+    @Override
+    public void close() {
+    }
+
+    private static final class Frame {
+
+        private final boolean mapping;
+
+        /**
+         * The keys written so far, which merged keys do not replace
+         */
+        private final Set<String> keys;
+        private boolean first = true;
+        private boolean expectKey = true;
+
+        Frame(boolean mapping) {
+            this.mapping = mapping;
+            this.keys = mapping ? new HashSet<>() : Collections.emptySet();
+        }
+    }
+
+    private static final class Recording {
+
+        private final @NotNull String anchor;
+        private final List<Event> events = new ArrayList<>();
+        private int depth = 0;
+
+        Recording(@NotNull String anchor) {
+            this.anchor = anchor;
+        }
+    }
+}